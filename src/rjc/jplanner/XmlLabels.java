@@ -47,6 +47,7 @@ public class XmlLabels
   public static final String XML_DT_FORMAT       = "datetime-format";
   public static final String XML_D_FORMAT        = "date-format";
   public static final String XML_NOTES           = "notes";
+  public static final String XML_LEVELLING       = "levelling";
 
   // 'calendar' labels
   public static final String XML_CALENDAR        = "calendar";
@@ -83,6 +84,7 @@ public class XmlLabels
   public static final String XML_TYPE            = "type";
   public static final String XML_PRIORITY        = "priority";
   public static final String XML_DEADLINE        = "deadline";
+  public static final String XML_ESTIMATE        = "estimate";
   public static final String XML_INDENT          = "indent";
 
   // 'display' labels
@@ -31,28 +31,33 @@ public class CommandPlanSetProperties implements IUndoCommand
   private String   m_oldTitle;
   private DateTime m_oldStart;
   private Calendar m_oldCal;
+  private boolean  m_oldLevelling;
   private String   m_oldDTformat;
   private String   m_oldDformat;
 
   private String   m_newTitle;
   private DateTime m_newStart;
   private Calendar m_newCal;
+  private boolean  m_newLevelling;
   private String   m_newDTformat;
   private String   m_newDformat;
 
   /**************************************** constructor ******************************************/
-  public CommandPlanSetProperties( String title, DateTime start, Calendar cal, String DTformat, String Dformat )
+  public CommandPlanSetProperties( String title, DateTime start, Calendar cal, boolean levelling, String DTformat,
+      String Dformat )
   {
     // initialise private variables
     m_oldTitle = JPlanner.plan.getTitle();
     m_oldStart = JPlanner.plan.getDefaultStart();
     m_oldCal = JPlanner.plan.getDefaultCalendar();
+    m_oldLevelling = JPlanner.plan.isLevelling();
     m_oldDTformat = JPlanner.plan.getDateTimeFormat();
     m_oldDformat = JPlanner.plan.getDateFormat();
 
     m_newTitle = title;
     m_newStart = start;
     m_newCal = cal;
+    m_newLevelling = levelling;
     m_newDTformat = DTformat;
     m_newDformat = Dformat;
   }
@@ -65,6 +70,7 @@ public class CommandPlanSetProperties implements IUndoCommand
     JPlanner.plan.setTitle( m_newTitle );
     JPlanner.plan.setDefaultStart( m_newStart );
     JPlanner.plan.setDefaultCalendar( m_newCal );
+    JPlanner.plan.setLevelling( m_newLevelling );
     JPlanner.plan.setDateTimeFormat( m_newDTformat );
     JPlanner.plan.setDateFormat( m_newDformat );
   }
@@ -77,6 +83,7 @@ public class CommandPlanSetProperties implements IUndoCommand
     JPlanner.plan.setTitle( m_oldTitle );
     JPlanner.plan.setDefaultStart( m_oldStart );
     JPlanner.plan.setDefaultCalendar( m_oldCal );
+    JPlanner.plan.setLevelling( m_oldLevelling );
     JPlanner.plan.setDateTimeFormat( m_oldDTformat );
     JPlanner.plan.setDateFormat( m_oldDformat );
   }
@@ -96,8 +103,8 @@ public class CommandPlanSetProperties implements IUndoCommand
     if ( !m_oldDformat.equals( m_newDformat ) )
       updates |= UPDATE_RESOURCES | UPDATE_CALENDARS;
 
-    // if start or calendar changed, trigger re-schedule
-    if ( !m_oldStart.equals( m_newStart ) || !m_oldCal.equals( m_newCal ) )
+    // if start or calendar or levelling changed, trigger re-schedule
+    if ( !m_oldStart.equals( m_newStart ) || !m_oldCal.equals( m_newCal ) || m_oldLevelling != m_newLevelling )
       updates |= RESCHEDULE;
 
     return updates;
@@ -117,6 +124,8 @@ public class CommandPlanSetProperties implements IUndoCommand
       txt.append( "default start/" );
     if ( m_newCal != m_oldCal )
       txt.append( "default calendar/" );
+    if ( m_newLevelling != m_oldLevelling )
+      txt.append( "resource levelling/" );
     if ( !m_newDTformat.equals( m_oldDTformat ) )
       txt.append( "date-time format/" );
     if ( !m_newDformat.equals( m_oldDformat ) )
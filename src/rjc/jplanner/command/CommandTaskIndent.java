@@ -85,7 +85,7 @@ public class CommandTaskIndent implements IUndoCommand
       Task task = JPlanner.plan.getTask( row );
       task.setIndent( task.getIndent() + 1 );
     }
-    JPlanner.plan.tasks.updateSummaryMarkers();
+    JPlanner.plan.tasks.updateSummaryMarkers( m_rows );
     m_predecessors = JPlanner.plan.tasks.cleanPredecessors();
     JPlanner.gui.message( m_predecessors.toString( "Cleaned" ) );
 
@@ -111,7 +111,7 @@ public class CommandTaskIndent implements IUndoCommand
       Task task = JPlanner.plan.getTask( row );
       task.setIndent( task.getIndent() - 1 );
     }
-    JPlanner.plan.tasks.updateSummaryMarkers();
+    JPlanner.plan.tasks.updateSummaryMarkers( m_rows );
     JPlanner.plan.tasks.restorePredecessors( m_predecessors );
     JPlanner.gui.message( m_predecessors.toString( "Restored" ) );
 
@@ -65,12 +65,13 @@ public class CommandTaskSetValue implements IUndoCommand
     // update tasks tables
     int updates = UPDATE_TASKS;
 
-    // if initials and old value was null, update properties so it shows new count of tasks
-    if ( m_section == Task.SECTION_TITLE && m_oldValue == null )
+    // if title and old or new value is null, update properties so it shows new count of tasks
+    if ( m_section == Task.SECTION_TITLE && ( m_oldValue == null || m_newValue == null ) )
       updates |= UPDATE_PROPERTIES | RESCHEDULE;
 
-    // if updating field other than title/comment/cost, trigger re-schedule
-    if ( m_section != Task.SECTION_TITLE && m_section != Task.SECTION_COMMENT && m_section != Task.SECTION_COST )
+    // if updating field other than title/comment/cost/estimate, trigger re-schedule
+    if ( m_section != Task.SECTION_TITLE && m_section != Task.SECTION_COMMENT && m_section != Task.SECTION_COST
+        && m_section != Task.SECTION_ESTIMATE )
       updates |= RESCHEDULE;
 
     return updates;
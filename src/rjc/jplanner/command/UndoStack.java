@@ -20,6 +20,7 @@ package rjc.jplanner.command;
 
 import java.util.ArrayList;
 
+import javafx.animation.AnimationTimer;
 import rjc.jplanner.JPlanner;
 
 /*************************************************************************************************/
@@ -33,6 +34,21 @@ public class UndoStack
   private int                     m_cleanIndex;         // index when declared clean
   private boolean                 m_previousCleanState; // previous so change of clean state can be checked
   private IUndoCommand            m_parentCommand;      // set if want to merge commands
+  private int                     m_mergeRestart;       // RESCHEDULE if schedule stopped while merging commands
+
+  // gui updates requested by a burst of commands are collected and performed once on the next pulse
+  private int                     m_pending;            // gui updates requested but not yet performed
+  private AnimationTimer          m_pulse;              // performs pending gui updates on next pulse
+  private long                    m_requests;           // number of update requests received
+  private long                    m_flushes;            // number of times pending updates performed
+  private long                    m_scheduleRequests;   // number of update requests including re-schedule
+  private long                    m_schedules;          // number of re-schedules performed
+  private long                    m_redrawRequests;     // number of update requests including table redraws
+  private long                    m_redraws;            // number of table redraws performed
+
+  private static final int        REDRAWS = IUndoCommand.UPDATE_TASKS | IUndoCommand.UPDATE_RESOURCES
+      | IUndoCommand.UPDATE_CALENDARS | IUndoCommand.UPDATE_DAYS | IUndoCommand.RESET_TASKS
+      | IUndoCommand.RESET_RESOURCES | IUndoCommand.RESET_CALENDARS | IUndoCommand.RESET_DAYS;
 
   /**************************************** constructor ******************************************/
   public UndoStack()
@@ -76,35 +92,95 @@ public class UndoStack
   /******************************************** update *********************************************/
   public void update( int updates )
   {
-    // perform requested gui updates
-    if ( JPlanner.gui != null )
+    // collect requested gui updates to be performed together on next pulse
+    if ( JPlanner.gui == null || updates == 0 )
+      return;
+
+    m_requests++;
+    if ( ( updates & IUndoCommand.RESCHEDULE ) > 0 )
+      m_scheduleRequests++;
+    if ( ( updates & REDRAWS ) > 0 )
+      m_redrawRequests++;
+
+    if ( m_pending == 0 )
     {
-      if ( ( updates & IUndoCommand.RESCHEDULE ) > 0 )
-        JPlanner.gui.schedule();
-
-      if ( ( updates & IUndoCommand.UPDATE_TASKS ) > 0 )
-        JPlanner.gui.redrawTaskTables();
-      if ( ( updates & IUndoCommand.UPDATE_RESOURCES ) > 0 )
-        JPlanner.gui.redrawResourceTables();
-      if ( ( updates & IUndoCommand.UPDATE_CALENDARS ) > 0 )
-        JPlanner.gui.redrawCalendarTables();
-      if ( ( updates & IUndoCommand.UPDATE_DAYS ) > 0 )
-        JPlanner.gui.redrawDayTypeTables();
-
-      if ( ( updates & IUndoCommand.RESET_TASKS ) > 0 )
-        JPlanner.gui.relayoutTaskTables();
-      if ( ( updates & IUndoCommand.RESET_RESOURCES ) > 0 )
-        JPlanner.gui.relayoutResourceTables();
-      if ( ( updates & IUndoCommand.RESET_CALENDARS ) > 0 )
-        JPlanner.gui.relayoutCalendarTables();
-      if ( ( updates & IUndoCommand.RESET_DAYS ) > 0 )
-        JPlanner.gui.relayoutDayTypeTables();
-
-      if ( ( updates & IUndoCommand.UPDATE_PROPERTIES ) > 0 )
-        JPlanner.gui.getPropertiesPane().updateFromPlan();
-      if ( ( updates & IUndoCommand.UPDATE_NOTES ) > 0 )
-        JPlanner.gui.getNotesPane().updateFromPlan();
+      if ( m_pulse == null )
+        m_pulse = new AnimationTimer()
+        {
+          @Override
+          public void handle( long now )
+          {
+            stop();
+            flush();
+          }
+        };
+      m_pulse.start();
     }
+    m_pending |= updates;
+  }
+
+  /******************************************** flush ********************************************/
+  public void flush()
+  {
+    // perform pending gui updates, re-scheduling before redrawing so tables show new schedule
+    int updates = m_pending;
+    m_pending = 0;
+    if ( m_pulse != null )
+      m_pulse.stop();
+    if ( JPlanner.gui == null || updates == 0 )
+      return;
+
+    m_flushes++;
+    if ( ( updates & IUndoCommand.RESCHEDULE ) > 0 )
+      m_schedules++;
+    if ( ( updates & REDRAWS ) > 0 )
+      m_redraws++;
+
+    if ( ( updates & IUndoCommand.RESCHEDULE ) > 0 )
+      JPlanner.gui.schedule();
+
+    if ( ( updates & IUndoCommand.UPDATE_TASKS ) > 0 )
+      JPlanner.gui.redrawTaskTables();
+    if ( ( updates & IUndoCommand.UPDATE_RESOURCES ) > 0 )
+      JPlanner.gui.redrawResourceTables();
+    if ( ( updates & IUndoCommand.UPDATE_CALENDARS ) > 0 )
+      JPlanner.gui.redrawCalendarTables();
+    if ( ( updates & IUndoCommand.UPDATE_DAYS ) > 0 )
+      JPlanner.gui.redrawDayTypeTables();
+
+    if ( ( updates & IUndoCommand.RESET_TASKS ) > 0 )
+      JPlanner.gui.relayoutTaskTables();
+    if ( ( updates & IUndoCommand.RESET_RESOURCES ) > 0 )
+      JPlanner.gui.relayoutResourceTables();
+    if ( ( updates & IUndoCommand.RESET_CALENDARS ) > 0 )
+      JPlanner.gui.relayoutCalendarTables();
+    if ( ( updates & IUndoCommand.RESET_DAYS ) > 0 )
+      JPlanner.gui.relayoutDayTypeTables();
+
+    if ( ( updates & IUndoCommand.UPDATE_PROPERTIES ) > 0 )
+      JPlanner.gui.getPropertiesPane().updateFromPlan();
+    if ( ( updates & IUndoCommand.UPDATE_NOTES ) > 0 )
+      JPlanner.gui.getNotesPane().updateFromPlan();
+  }
+
+  /************************************** getUpdateMetrics ***************************************/
+  public String getUpdateMetrics()
+  {
+    // return description of how many requested gui updates were coalesced
+    return m_requests + " update requests performed in " + m_flushes + " pulses, " + m_scheduleRequests
+        + " re-schedules reduced to " + m_schedules + ", " + m_redrawRequests + " table redraws reduced to "
+        + m_redraws;
+  }
+
+  /**************************************** stopSchedule *****************************************/
+  private int stopSchedule()
+  {
+    // stop any schedule running on worker thread before plan is changed, returning RESCHEDULE if
+    // one was stopped so it is restarted afterwards
+    if ( JPlanner.gui != null && JPlanner.gui.stopSchedule() )
+      return IUndoCommand.RESCHEDULE;
+
+    return 0;
   }
 
   /***************************************** startMerge ******************************************/
@@ -134,8 +210,10 @@ public class UndoStack
 
       // add new command to stack, do it, and increment stack index
       m_stack.add( command );
+      int restart = stopSchedule() | m_mergeRestart;
+      m_mergeRestart = 0;
       command.redo();
-      update( command.update() );
+      update( command.update() | restart );
       m_index++;
       JPlanner.gui.updateUndoRedo();
     }
@@ -143,6 +221,7 @@ public class UndoStack
     {
       // merge command and do it
       m_parentCommand.merge( command );
+      m_mergeRestart |= stopSchedule();
       command.redo();
     }
   }
@@ -159,8 +238,9 @@ public class UndoStack
 
     // add new command to stack, do it, and increment stack index
     m_stack.add( command );
+    int restart = stopSchedule();
     command.redo();
-    update( command.update() );
+    update( command.update() | restart );
     m_index++;
     JPlanner.gui.updateUndoRedo();
   }
@@ -172,8 +252,9 @@ public class UndoStack
     if ( m_index > 0 )
     {
       m_index--;
+      int restart = stopSchedule();
       m_stack.get( m_index ).undo();
-      update( m_stack.get( m_index ).update() );
+      update( m_stack.get( m_index ).update() | restart );
       JPlanner.gui.updateUndoRedo();
     }
   }
@@ -184,8 +265,9 @@ public class UndoStack
     // action command and increment index
     if ( m_index < m_stack.size() )
     {
+      int restart = stopSchedule();
       m_stack.get( m_index ).redo();
-      update( m_stack.get( m_index ).update() );
+      update( m_stack.get( m_index ).update() | restart );
       m_index++;
       JPlanner.gui.updateUndoRedo();
     }
@@ -215,11 +297,15 @@ public class UndoStack
   /******************************************** clear ********************************************/
   public void clear()
   {
-    // clean the stack
+    // clean the stack, dropping any gui updates not yet performed as they are for the cleared commands
     m_stack.clear();
     m_index = 0;
     m_cleanIndex = 0;
     m_previousCleanState = true;
+    m_mergeRestart = 0;
+    m_pending = 0;
+    if ( m_pulse != null )
+      m_pulse.stop();
     JPlanner.gui.updateUndoRedo();
   }
 
@@ -244,7 +330,7 @@ public class UndoStack
     if ( index == m_index )
       return;
 
-    int updates = 0;
+    int updates = stopSchedule();
     while ( index < m_index && m_index > 0 )
     {
       m_index--;
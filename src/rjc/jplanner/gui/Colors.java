@@ -44,6 +44,7 @@ public class Colors
   public static final Color NORMAL_CELL        = Color.WHITE;
   public static final Color SELECTED_CELL      = LIGHTBLUE;
   public static final Color DISABLED_CELL      = LIGHTERGRAY;
+  public static final Color OVERALLOCATED_CELL = Color.rgb( 255, 200, 200 );
   public static final Color NORMAL_TEXT        = Color.BLACK;
   public static final Color SELECTED_TEXT      = Color.WHITE;
 
@@ -53,6 +54,8 @@ public class Colors
   public static final Color GANTT_DIVIDER      = Color.SILVER;
   public static final Color GANTT_TASK_EDGE    = Color.BLACK;
   public static final Color GANTT_TASK_FILL    = Color.YELLOW;
+  public static final Color GANTT_CRITICAL     = Color.RED;
+  public static final Color GANTT_OVERALLOC    = Color.ORANGERED;
   public static final Color GANTT_SUMMARY      = Color.BLACK;
   public static final Color GANTT_MILESTONE    = Color.BLACK;
   public static final Color GANTT_DEPENDENCY   = Color.SLATEGRAY;
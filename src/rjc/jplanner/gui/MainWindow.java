@@ -41,11 +41,13 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
@@ -58,6 +60,7 @@ import rjc.jplanner.gui.plan.PlanProperties;
 import rjc.jplanner.model.Calendar;
 import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.RiskSimulation;
 
 /*************************************************************************************************/
 /******************************* Main JPlanner application window ********************************/
@@ -68,10 +71,15 @@ public class MainWindow
   public static String             STYLE_TOOLTIP;
   public static Image              JPLANNER_ICON;                 // icon for all JPlanner Windows
 
+  private static final int         RISK_PASSES = 5000;            // schedule passes per risk simulation
+  private static final long        RISK_SEED   = 1L;              // random seed, so repeated simulations agree
+
   private Stage                    m_stage;                       // operating system window holding MainWindow
   private MainTabWidget            m_mainTabWidget;               // MainTabWidget associated with MainWindow
   private Menus                    m_menus     = new Menus();     // menus at top of MainWindow
   private TextField                m_statusBar = new TextField(); // status bar at bottom of MainWindow
+  private ProgressBar              m_progress;                    // scheduling progress at end of status bar
+  private Scheduler                m_scheduler;                   // runs scheduling off the gui thread
   private UndoStackWindow          m_undoWindow;                  // window to show plan undo-stack
   private ArrayList<MainTabWidget> m_tabWidgets;                  // list of MainTabWidgets including one in MainWindow
 
@@ -84,12 +92,15 @@ public class MainWindow
     STYLE_TOOLTIP += "-fx-padding: 0.2em 1em 0.2em 0.5em;";
     STYLE_TOOLTIP += "-fx-background-radius: 3px;";
     m_mainTabWidget = new MainTabWidget( true, false );
+    m_progress = new ProgressBar();
 
     // arrange main application window layout
     GridPane grid = new GridPane();
     grid.add( m_menus, 0, 0 );
     grid.add( m_mainTabWidget, 0, 1 );
-    grid.add( m_statusBar, 0, 2 );
+    HBox status = new HBox( m_statusBar, m_progress );
+    HBox.setHgrow( m_statusBar, Priority.ALWAYS );
+    grid.add( status, 0, 2 );
     GridPane.setHgrow( m_mainTabWidget, Priority.ALWAYS );
     GridPane.setVgrow( m_mainTabWidget, Priority.ALWAYS );
 
@@ -98,6 +109,8 @@ public class MainWindow
     m_statusBar.setFocusTraversable( false );
     m_statusBar.setBackground( new Background( new BackgroundFill( Colors.GENERAL_BACKGROUND, null, null ) ) );
     m_statusBar.setText( "JPlanner started" );
+    m_progress.setMaxHeight( Double.MAX_VALUE );
+    m_scheduler = new Scheduler( m_progress );
 
     // construct main application window
     JPLANNER_ICON = new Image( getClass().getResourceAsStream( "jplanner.png" ) );
@@ -279,7 +292,9 @@ public class MainWindow
     if ( !okToProceed( "Do you want to save before starting new?" ) )
       return false;
 
-    // create new plan
+    // create new plan, dropping any gui updates pending for old plan
+    m_scheduler.stop();
+    JPlanner.plan.getUndostack().clear();
     JPlanner.plan = new Plan();
     JPlanner.plan.initialise();
 
@@ -336,6 +351,7 @@ public class MainWindow
     }
 
     // create temporary plan for loading into
+    m_scheduler.stop();
     Plan oldPlan = JPlanner.plan;
     JPlanner.plan = new Plan();
 
@@ -388,7 +404,8 @@ public class MainWindow
       return false;
     }
 
-    // plan loaded successfully, so schedule
+    // plan loaded successfully, so drop any gui updates pending for old plan and schedule
+    oldPlan.getUndostack().clear();
     message( "Successfully loaded '" + file.getPath() + "'" );
     schedule();
 
@@ -775,11 +792,67 @@ public class MainWindow
       return;
     }
 
-    // schedule the plan, then redraw task tables (which also triggers gantt redraws) to show result
+    // schedule the plan on worker thread, result is shown when scheduling complete
     JPlanner.gui.message( "Rescheduling plan" );
-    JPlanner.plan.schedule();
+    m_scheduler.start();
+  }
+
+  /****************************************** scheduled ******************************************/
+  void scheduled()
+  {
+    // redraw task tables (which also triggers gantt redraws) to show schedule result,
+    // and resource tables to show any resource over-allocations
+    redrawTaskTables();
+    redrawResourceTables();
+
+    int overAlloc = JPlanner.plan.work.getOverAllocations().size();
+    if ( overAlloc > 0 )
+      JPlanner.gui.message( "Rescheduled plan, " + overAlloc + " resource over-allocation periods" );
+    else
+      JPlanner.gui.message( "Rescheduled plan" );
+  }
+
+  /**************************************** stopSchedule *****************************************/
+  public boolean stopSchedule()
+  {
+    // stop any running schedule before plan is changed, returning true if one was running
+    return m_scheduler.stop();
+  }
+
+  /**************************************** simulateRisk *****************************************/
+  public void simulateRisk()
+  {
+    // simulate many schedules with task durations drawn from their estimates on worker thread,
+    // result is shown when simulation complete
+    if ( JPlanner.plan.getLatestTaskEnd() == null )
+    {
+      JPlanner.gui.messageError( "Plan has no tasks to simulate" );
+      return;
+    }
+    if ( m_scheduler.isRunning() )
+    {
+      JPlanner.gui.messageError( "Plan is being rescheduled, simulate when complete" );
+      return;
+    }
+    if ( m_scheduler.isSimulating() )
+    {
+      JPlanner.gui.messageError( "Schedule risk is already being simulated" );
+      return;
+    }
+
+    // take snapshot of plan here as it may be changed while simulation runs
+    JPlanner.gui.message( "Simulating schedule risk" );
+    RiskSimulation simulation = new RiskSimulation( JPlanner.plan.tasks, JPlanner.plan.getDefaultCalendar() );
+    m_scheduler.simulateRisk( simulation, RISK_PASSES, RISK_SEED );
+  }
+
+  /****************************************** simulated ******************************************/
+  void simulated( RiskSimulation.Result risk )
+  {
+    // show percentiles of plan end and redraw task tables to show how often each task was critical
     redrawTaskTables();
-    JPlanner.gui.message( "Rescheduled plan" );
+    JPlanner.gui.message( "Schedule risk from " + risk.getPasses() + " passes, end P50 " + risk.getEnd( 50.0 ).toFormat()
+        + ", P80 " + risk.getEnd( 80.0 ).toFormat() + ", P90 " + risk.getEnd( 90.0 ).toFormat() );
   }
 
   /************************************** checkPlanUpToDate **************************************/
@@ -196,7 +196,10 @@ class Menus extends MenuBar
     MenuItem reportTBD = new MenuItem( "TBD" );
     reportTBD.setDisable( true );
 
-    menu.getItems().addAll( reportTBD );
+    MenuItem reportRisk = new MenuItem( "Schedule risk" );
+    reportRisk.setOnAction( event -> JPlanner.gui.simulateRisk() );
+
+    menu.getItems().addAll( reportTBD, reportRisk );
     return menu;
   }
 
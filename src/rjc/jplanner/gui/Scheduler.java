@@ -0,0 +1,192 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.gui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.control.ProgressBar;
+import rjc.jplanner.JPlanner;
+import rjc.jplanner.model.RiskSimulation;
+import rjc.jplanner.model.Scheduling;
+
+/*************************************************************************************************/
+/******** Runs plan scheduling and risk simulation on a worker thread off the gui thread *********/
+/*************************************************************************************************/
+
+class Scheduler
+{
+  // all methods are called on the gui thread, which cancels any running schedule before changing the
+  // plan without waiting for it, as a run only changes the plan when published on the gui thread
+  private ExecutorService m_worker;     // single worker thread that runs schedules in turn
+  private Scheduling      m_scheduling; // schedule running or waiting to run, or null
+  private RiskSimulation  m_simulation; // risk simulation running or waiting to run, or null
+  private ProgressBar     m_progress;   // shows proportion of tasks scheduled while running
+  private AnimationTimer  m_timer;      // updates progress bar each gui pulse while running
+
+  /**************************************** constructor ******************************************/
+  Scheduler( ProgressBar progress )
+  {
+    // worker is a daemon so it never stops application exiting
+    m_worker = Executors.newSingleThreadExecutor( runnable ->
+    {
+      Thread thread = new Thread( runnable, "Scheduler" );
+      thread.setDaemon( true );
+      return thread;
+    } );
+
+    m_progress = progress;
+    m_progress.setVisible( false );
+    m_timer = new AnimationTimer()
+    {
+      @Override
+      public void handle( long now )
+      {
+        if ( m_scheduling != null )
+          m_progress.setProgress( m_scheduling.getProgress() );
+      }
+    };
+  }
+
+  /******************************************** start ********************************************/
+  void start()
+  {
+    // stop any schedule already running as plan has changed, and start scheduling on worker
+    stop();
+    m_simulation = null;
+    Scheduling scheduling = JPlanner.plan.tasks.prepareSchedule();
+    m_scheduling = scheduling;
+    m_worker.execute( () ->
+    {
+      // a cancelled run may see the plan changing, so its failure is expected and ignored
+      boolean complete = false;
+      try
+      {
+        complete = scheduling.run();
+      }
+      catch ( RuntimeException exception )
+      {
+        if ( !scheduling.isCancelled() )
+          exception.printStackTrace();
+      }
+
+      boolean completed = complete;
+      Platform.runLater( () -> finished( scheduling, completed ) );
+    } );
+
+    m_progress.setProgress( 0.0 );
+    m_progress.setVisible( true );
+    m_timer.start();
+  }
+
+  /******************************************** stop *********************************************/
+  boolean stop()
+  {
+    // cancel running schedule and forget it without waiting, returning true if one was running,
+    // and forget any risk simulation as it will not be of the changed plan
+    m_simulation = null;
+    if ( m_scheduling == null )
+      return false;
+
+    m_scheduling.cancel();
+    JPlanner.plan.tasks.abandonSchedule( m_scheduling );
+    m_scheduling = null;
+    m_timer.stop();
+    m_progress.setVisible( false );
+    return true;
+  }
+
+  /**************************************** simulateRisk *****************************************/
+  void simulateRisk( RiskSimulation simulation, int passes, long seed )
+  {
+    // run risk simulation of plan snapshot on worker, its result is shown if plan not changed since
+    m_simulation = simulation;
+    m_worker.execute( () ->
+    {
+      RiskSimulation.Result risk = null;
+      try
+      {
+        risk = simulation.run( passes, seed );
+      }
+      catch ( RuntimeException exception )
+      {
+        exception.printStackTrace();
+      }
+
+      RiskSimulation.Result result = risk;
+      Platform.runLater( () -> simulated( simulation, result ) );
+    } );
+  }
+
+  /**************************************** isSimulating *****************************************/
+  boolean isSimulating()
+  {
+    // return true if a risk simulation is running
+    return m_simulation != null;
+  }
+
+  /****************************************** isRunning ******************************************/
+  boolean isRunning()
+  {
+    // return true if a schedule is running
+    return m_scheduling != null;
+  }
+
+  /****************************************** finished *******************************************/
+  private void finished( Scheduling scheduling, boolean complete )
+  {
+    // ignore if schedule stopped since finishing, as already abandoned
+    if ( scheduling != m_scheduling )
+      return;
+
+    m_scheduling = null;
+    m_timer.stop();
+    m_progress.setVisible( false );
+    if ( complete )
+    {
+      JPlanner.plan.tasks.publishSchedule( scheduling );
+      JPlanner.gui.scheduled();
+    }
+    else
+    {
+      JPlanner.plan.tasks.abandonSchedule( scheduling );
+      JPlanner.gui.messageError( "Failed to reschedule plan" );
+    }
+  }
+
+  /****************************************** simulated ******************************************/
+  private void simulated( RiskSimulation simulation, RiskSimulation.Result risk )
+  {
+    // ignore if plan changed since simulation started, as result no longer for the current schedule
+    if ( simulation != m_simulation )
+      return;
+
+    m_simulation = null;
+    if ( risk != null )
+    {
+      JPlanner.plan.tasks.setRisk( risk );
+      JPlanner.gui.simulated( risk );
+    }
+    else
+      JPlanner.gui.messageError( "Failed to simulate schedule risk" );
+  }
+
+}
@@ -24,6 +24,7 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ScrollBar;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.GridPane;
 import javafx.scene.text.FontSmoothingType;
 import javafx.scene.text.Text;
@@ -38,6 +39,7 @@ class UndoStackWindow extends Stage
 {
   private Canvas     m_canvas       = new Canvas();
   private ScrollBar  m_scrollbar    = new ScrollBar();
+  private Tooltip    m_metrics      = new Tooltip();
   private int        m_rowDescent;
   private int        m_rowHeight;
 
@@ -77,6 +79,10 @@ class UndoStackWindow extends Stage
     scene.heightProperty().addListener( ( observable, oldValue, newValue ) -> updateScrollBarAndCanvas( false ) );
     scene.widthProperty().addListener( ( observable, oldValue, newValue ) -> updateScrollBarAndCanvas( false ) );
 
+    // show how many gui updates requested by commands were performed when hovering over canvas
+    m_metrics.setOnShowing( event -> m_metrics.setText( JPlanner.plan.getUndostack().getUpdateMetrics() ) );
+    Tooltip.install( m_canvas, m_metrics );
+
     // update canvas on scroll bar movement or focus change
     m_scrollbar.valueProperty().addListener( ( observable, oldValue, newValue ) -> redrawCanvas() );
     m_canvas.focusedProperty().addListener( ( observable, oldF, newF ) -> redrawCanvas() );
@@ -20,13 +20,16 @@ package rjc.jplanner.gui.gantt;
 
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
 import rjc.jplanner.JPlanner;
 import rjc.jplanner.gui.Colors;
 import rjc.jplanner.gui.table.Table;
 import rjc.jplanner.model.Calendar;
+import rjc.jplanner.model.CriticalPath;
 import rjc.jplanner.model.Date;
 import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.GanttData;
+import rjc.jplanner.model.OverAllocations;
 import rjc.jplanner.model.Predecessors;
 import rjc.jplanner.model.Predecessors.Predecessor;
 import rjc.jplanner.model.Task;
@@ -161,6 +164,8 @@ class GanttPlot extends Canvas
     int ry = m_table.getYStartByRow( first ) - m_table.getHorizontalHeaderHeight();
     int rh;
     int numTasks = JPlanner.plan.getTasksCount();
+    OverAllocations overAlloc = JPlanner.plan.work.getOverAllocations();
+    CriticalPath critical = JPlanner.plan.tasks.getCriticalPath();
     for ( int row = first; row < numTasks; row++ )
     {
       // get row start-y and height, skip hidden rows
@@ -168,13 +173,15 @@ class GanttPlot extends Canvas
       if ( rh <= 0 )
         continue;
 
-      // if task not null, draw task gantt-data
-      GanttData data = JPlanner.plan.getTask( row ).getGanttData();
+      // if task not null, draw task gantt-data, highlighting critical tasks and tasks using
+      // over-allocated resources
+      Task task = JPlanner.plan.getTask( row );
+      GanttData data = task.getGanttData();
       if ( data != null )
-        drawTask( ry + rh / 2, data, "TBD" );
+        drawTask( ry + rh / 2, data, "TBD", overAlloc.isOverAllocated( task ), critical.isCritical( task ) );
 
       // draw deadline
-      drawDeadline( ry + rh / 2, JPlanner.plan.getTask( row ).getDeadline() );
+      drawDeadline( ry + rh / 2, task.getDeadline() );
 
       // if beyond area to be drawn, exit loop
       ry += rh;
@@ -205,7 +212,7 @@ class GanttPlot extends Canvas
   }
 
   /****************************************** drawTask *******************************************/
-  public void drawTask( int y, GanttData gd, String label )
+  public void drawTask( int y, GanttData gd, String label, boolean overAllocated, boolean critical )
   {
     // if gantt-data start not valid, don't draw anything
     if ( gd.start == null )
@@ -217,13 +224,14 @@ class GanttPlot extends Canvas
     else if ( gd.isSummary() )
       drawSummary( y, gd );
     else
-      drawTaskBar( y, gd );
+      drawTaskBar( y, gd, overAllocated ? Colors.GANTT_OVERALLOC : Colors.GANTT_TASK_FILL,
+          critical ? Colors.GANTT_CRITICAL : Colors.GANTT_TASK_EDGE );
 
     // TODO draw label !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
   }
 
   /***************************************** drawTaskBar *****************************************/
-  private void drawTaskBar( int ty, GanttData gd )
+  private void drawTaskBar( int ty, GanttData gd, Paint fill, Paint edge )
   {
     // determine scale to draw offset
     double scale = 0.0;
@@ -234,8 +242,8 @@ class GanttPlot extends Canvas
 
     // set pen and fill colours
     GraphicsContext gc = getGraphicsContext2D();
-    gc.setStroke( Colors.GANTT_TASK_EDGE );
-    gc.setFill( Colors.GANTT_TASK_FILL );
+    gc.setStroke( edge );
+    gc.setFill( fill );
 
     // calculate start position of task bar
     int tx = m_gantt.x( gd.start );
@@ -20,6 +20,7 @@ package rjc.jplanner.gui.plan;
 
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextField;
@@ -53,6 +54,7 @@ public class PlanProperties extends ScrollPane
   private TextField         m_actualStart     = new TextField();
   private TextField         m_end             = new TextField();
   private CalendarCombo     m_defaultCalendar = new CalendarCombo();
+  private CheckBox          m_levelling       = new CheckBox();
   private TextField         m_DTformat        = new TextField();
   private TextField         m_Dformat         = new TextField();
   private TextField         m_fileName        = new TextField();
@@ -84,6 +86,7 @@ public class PlanProperties extends ScrollPane
     addRow( row++, "Actual Start", m_actualStart, true );
     addRow( row++, "End", m_end, true );
     addRow( row++, "Default Calendar", m_defaultCalendar, false );
+    addRow( row++, "Resource levelling", m_levelling, false );
     addRow( row++, "Date-time format", m_DTformat, false );
     addRow( row++, "Date format", m_Dformat, false );
     addRow( row++, "File name", m_fileName, true );
@@ -147,6 +150,9 @@ public class PlanProperties extends ScrollPane
     m_title.addEventHandler( KeyEvent.KEY_PRESSED, event -> keyPressed( event ) );
     m_defaultStart.addEventHandler( KeyEvent.KEY_PRESSED, event -> keyPressed( event ) );
     m_defaultCalendar.addEventHandler( KeyEvent.KEY_PRESSED, event -> keyPressed( event ) );
+
+    // levelling takes effect as soon as toggled
+    m_levelling.setOnAction( event -> updatePlan() );
   }
 
   /***************************************** keyPressed ******************************************/
@@ -261,6 +267,7 @@ public class PlanProperties extends ScrollPane
     // update the gui property widgets with values from plan
     m_title.setText( JPlanner.plan.getTitle() );
     m_defaultCalendar.setCalendar( JPlanner.plan.getDefaultCalendar() );
+    m_levelling.setSelected( JPlanner.plan.isLevelling() );
     m_DTformat.setText( JPlanner.plan.getDateTimeFormat() );
     m_Dformat.setText( JPlanner.plan.getDateFormat() );
     m_fileName.setText( JPlanner.plan.getFilename() );
@@ -282,6 +289,7 @@ public class PlanProperties extends ScrollPane
     // get values from gui editors
     String title = m_title.getText();
     Calendar cal = m_defaultCalendar.getCalendar();
+    boolean levelling = m_levelling.isSelected();
 
     DateTime start = JPlanner.isError( m_defaultStart ) ? JPlanner.plan.getDefaultStart()
         : m_defaultStart.getDateTime();
@@ -295,12 +303,13 @@ public class PlanProperties extends ScrollPane
 
     // if properties not changed, return doing nothing
     if ( JPlanner.plan.getTitle().equals( title ) && JPlanner.plan.getDefaultStart().equals( start )
-        && JPlanner.plan.getDefaultCalendar() == cal && JPlanner.plan.getDateTimeFormat().equals( DTformat )
-        && JPlanner.plan.getDateFormat().equals( Dformat ) )
+        && JPlanner.plan.getDefaultCalendar() == cal && JPlanner.plan.isLevelling() == levelling
+        && JPlanner.plan.getDateTimeFormat().equals( DTformat ) && JPlanner.plan.getDateFormat().equals( Dformat ) )
       return;
 
     // update plan via undo-stack
-    JPlanner.plan.getUndostack().push( new CommandPlanSetProperties( title, start, cal, DTformat, Dformat ) );
+    JPlanner.plan.getUndostack()
+        .push( new CommandPlanSetProperties( title, start, cal, levelling, DTformat, Dformat ) );
   }
 
 }
@@ -16,71 +16,44 @@
  *  along with this program.  If not, see http://www.gnu.org/licenses/    *
  **************************************************************************/
 
-package rjc.jplanner.gui.resources;
-
-import rjc.jplanner.gui.SpinEditor;
-import rjc.jplanner.gui.table.AbstractCellEditor;
-
-/*************************************************************************************************/
-/************************** Table cell editor for resource availability **************************/
-/*************************************************************************************************/
-
-class EditorResourceAvailable extends AbstractCellEditor
-{
-  SpinEditor m_spin; // spin editor
-
-  /**************************************** constructor ******************************************/
-  public EditorResourceAvailable( int columnIndex, int row )
-  {
-    // use spin editor
-    super( columnIndex, row );
-    m_spin = new SpinEditor();
-    m_spin.setFormat( "0" );
-    m_spin.setRange( 0.0, 99999.99, 2 );
-    m_spin.setStepPage( 1.0, 10.0 );
-    setControl( m_spin );
-  }
-
-  /******************************************* getValue ******************************************/
-  @Override
-  public Object getValue()
-  {
-    // return work value as double
-    return m_spin.getDouble();
-  }
-
-  /******************************************* setValue ******************************************/
-  @Override
-  public void setValue( Object value )
-  {
-    // set value depending on type
-    if ( value instanceof Double )
-      m_spin.setDouble( (double) value );
-    else
-      m_spin.setValue( (String) value );
-  }
-
-  /***************************************** isValueValid ****************************************/
-  @Override
-  public boolean isValueValid( Object value )
-  {
-    // value is valid if null or converts to a double or is decimal point
-    if ( value == null )
-      return true;
-
-    try
-    {
-      String str = (String) value;
-
-      if ( str.equals( "." ) )
-        return true; // is decimal point
-
-      Double.parseDouble( str );
-      return true; // converts to a double
-    }
-    catch ( Exception exception )
-    {
-      return false; // not valid double
-    }
-  }
-}
+package rjc.jplanner.gui.resources;
+
+import rjc.jplanner.JPlanner;
+import rjc.jplanner.gui.table.EditorText;
+import rjc.jplanner.model.Availability;
+
+/*************************************************************************************************/
+/************************** Table cell editor for resource availability **************************/
+/*************************************************************************************************/
+
+class EditorResourceAvailable extends EditorText
+{
+
+  /**************************************** constructor ******************************************/
+  public EditorResourceAvailable( int columnIndex, int row )
+  {
+    // create editor for number available, optionally followed by dated changes e.g. "1, 2018-06-01 0.5"
+    super( columnIndex, row );
+
+    // add listener to set error status
+    addListener( ( observable, oldText, newText ) ->
+    {
+      // display error message and set editor error status
+      String error = Availability.errors( newText );
+      if ( error == null )
+        JPlanner.setNoError( getControl(), "" );
+      else
+        JPlanner.setError( getControl(), error );
+    } );
+
+  }
+
+  /******************************************* getValue ******************************************/
+  @Override
+  public Object getValue()
+  {
+    // return text as an Availability
+    return new Availability( (String) super.getValue() );
+  }
+
+}
@@ -105,10 +105,12 @@ class ResourcesData extends AbstractDataSource
   @Override
   public Paint getCellBackground( int columnIndex, int row )
   {
-    // all cells are normal coloured except if null resource
+    // all cells are normal coloured except if null resource, or resource over-allocated
     Resource res = JPlanner.plan.getResource( row );
     if ( columnIndex != Resource.SECTION_INITIALS && res.isNull() )
       return Colors.DISABLED_CELL;
+    if ( JPlanner.plan.work.getOverAllocations().isOverAllocated( res ) )
+      return Colors.OVERALLOCATED_CELL;
 
     return Colors.NORMAL_CELL;
   }
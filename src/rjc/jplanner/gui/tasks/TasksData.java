@@ -90,6 +90,9 @@ class TasksData extends AbstractDataSource
     {
       case Task.SECTION_DURATION:
       case Task.SECTION_WORK:
+      case Task.SECTION_TOTAL:
+      case Task.SECTION_FREE:
+      case Task.SECTION_RISK:
         return Alignment.RIGHT;
       case Task.SECTION_TITLE:
       case Task.SECTION_PRED:
@@ -146,6 +149,8 @@ class TasksData extends AbstractDataSource
         return new EditorTaskPredecessors( columnIndex, row );
       case Task.SECTION_RES:
         return new EditorTaskResources( columnIndex, row );
+      case Task.SECTION_ESTIMATE:
+        return new EditorTaskEstimate( columnIndex, row );
       default:
         return new EditorText( columnIndex, row );
     }
@@ -219,6 +224,7 @@ class TasksData extends AbstractDataSource
 
         //case Task.SECTION_TITLE:
         case Task.SECTION_DEADLINE:
+        case Task.SECTION_ESTIMATE:
         case Task.SECTION_COMMENT:
           // always allow
           allowed.add( hash );
@@ -293,6 +299,9 @@ class TasksData extends AbstractDataSource
     table.setWidthByColumnIndex( Task.SECTION_WORK, 60 );
     table.setWidthByColumnIndex( Task.SECTION_PRIORITY, 60 );
     table.setWidthByColumnIndex( Task.SECTION_DEADLINE, 140 );
+    table.setWidthByColumnIndex( Task.SECTION_TOTAL, 70 );
+    table.setWidthByColumnIndex( Task.SECTION_FREE, 70 );
+    table.setWidthByColumnIndex( Task.SECTION_RISK, 70 );
     table.setWidthByColumnIndex( Task.SECTION_COMMENT, 140 );
 
     table.hideRow( 0 ); // hide row 0 (the overall project summary)
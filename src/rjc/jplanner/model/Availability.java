@@ -0,0 +1,256 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/*************************************************************************************************/
+/*************** Number of a resource available over time held as a step function ****************/
+/*************************************************************************************************/
+
+public class Availability
+{
+  // private inner class defining availability number formatting
+  private static final class NumberFormat extends DecimalFormat
+  {
+    private static final long serialVersionUID = 1L;
+
+    public NumberFormat()
+    {
+      applyPattern( "0" );
+      setMaximumFractionDigits( 2 );
+    }
+  }
+
+  private static final NumberFormat FORMAT = new NumberFormat();
+
+  private double                    m_initial;  // number available before first change
+  private long[]                    m_changeMS; // epoch-milliseconds of each change in ascending order
+  private double[]                  m_number;   // number available from each change until the next
+  private double[]                  m_integral; // number-milliseconds available from first change to each change
+  private double                    m_max;      // maximum number available at any time
+
+  /**************************************** constructor ******************************************/
+  public Availability( double number )
+  {
+    // construct constant availability
+    m_initial = number;
+    m_changeMS = new long[0];
+    m_number = new double[0];
+    m_integral = new double[0];
+    m_max = number;
+  }
+
+  /**************************************** constructor ******************************************/
+  public Availability( String text )
+  {
+    // construct from text "number, date number, date number ..." with dates in ascending order
+    String[] parts = text.split( "," );
+    m_changeMS = new long[parts.length];
+    m_number = new double[parts.length];
+
+    int count = 0;
+    for ( int index = 0; index < parts.length; index++ )
+    {
+      String part = parts[index].trim();
+      int space = part.indexOf( ' ' );
+
+      // first part can be just the number available before first change
+      if ( space < 0 && index == 0 )
+      {
+        m_initial = parseNumber( part );
+        continue;
+      }
+      if ( space < 0 )
+        throw new IllegalArgumentException( "Missing date or number '" + part + "'" );
+
+      Date date = parseDate( part.substring( 0, space ) );
+      long ms = date.getEpochday() * DateTime.MILLISECONDS_IN_DAY;
+      if ( count > 0 && ms <= m_changeMS[count - 1] )
+        throw new IllegalArgumentException( "Dates not in ascending order '" + date + "'" );
+
+      m_changeMS[count] = ms;
+      m_number[count++] = parseNumber( part.substring( space + 1 ).trim() );
+    }
+
+    // trim arrays to number of changes found, and accumulate number-milliseconds for integrals
+    m_changeMS = Arrays.copyOf( m_changeMS, count );
+    m_number = Arrays.copyOf( m_number, count );
+    m_integral = new double[count];
+    m_max = m_initial;
+    for ( int index = 0; index < count; index++ )
+    {
+      if ( index > 0 )
+        m_integral[index] = m_integral[index - 1]
+            + m_number[index - 1] * (double) ( m_changeMS[index] - m_changeMS[index - 1] );
+      m_max = Math.max( m_max, m_number[index] );
+    }
+  }
+
+  /***************************************** parseNumber *****************************************/
+  private static double parseNumber( String text )
+  {
+    // return number available from text, which must not be negative
+    double number;
+    try
+    {
+      number = Double.parseDouble( text );
+    }
+    catch ( NumberFormatException exception )
+    {
+      throw new IllegalArgumentException( "Invalid number '" + text + "'" );
+    }
+
+    if ( number < 0.0 || Double.isNaN( number ) || Double.isInfinite( number ) )
+      throw new IllegalArgumentException( "Invalid number '" + text + "'" );
+    return number;
+  }
+
+  /****************************************** parseDate ******************************************/
+  private static Date parseDate( String text )
+  {
+    // return date from text of type YYYY-MM-DD or YYYY/MM/DD
+    String[] parts = text.split( text.indexOf( '/' ) >= 0 ? "/" : "-" );
+    try
+    {
+      if ( parts.length == 3 )
+        return new Date( LocalDate.of( Integer.parseInt( parts[0] ), Integer.parseInt( parts[1] ),
+            Integer.parseInt( parts[2] ) ) );
+    }
+    catch ( RuntimeException exception )
+    {
+      // not a valid date, drop through to report
+    }
+
+    throw new IllegalArgumentException( "Invalid date '" + text + "'" );
+  }
+
+  /******************************************** errors *******************************************/
+  public static String errors( String text )
+  {
+    // return error message if text is not a valid availability, otherwise null
+    try
+    {
+      new Availability( text );
+      return null;
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      return exception.getMessage();
+    }
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // return availability as text that can be parsed back
+    StringBuilder text = new StringBuilder( FORMAT.format( m_initial ) );
+    for ( int index = 0; index < m_changeMS.length; index++ )
+      text.append( ", " ).append( new DateTime( m_changeMS[index] ).getDate() ).append( ' ' )
+          .append( FORMAT.format( m_number[index] ) );
+
+    return text.toString();
+  }
+
+  /******************************************** index ********************************************/
+  private int index( long ms )
+  {
+    // return index of last change at or before specified milliseconds, or -1 if none
+    int found = Arrays.binarySearch( m_changeMS, ms );
+    return found >= 0 ? found : -found - 2;
+  }
+
+  /****************************************** getNumber ******************************************/
+  public double getNumber( long ms )
+  {
+    // return number available at specified epoch-milliseconds
+    int index = index( ms );
+    return index < 0 ? m_initial : m_number[index];
+  }
+
+  /**************************************** getNextChange ****************************************/
+  public long getNextChange( long ms )
+  {
+    // return milliseconds when availability next changes after specified milliseconds, or Long.MAX_VALUE if never
+    int index = index( ms ) + 1;
+    return index < m_changeMS.length ? m_changeMS[index] : Long.MAX_VALUE;
+  }
+
+  /************************************** getPreviousChange **************************************/
+  public long getPreviousChange( long ms )
+  {
+    // return milliseconds when availability last changed before specified milliseconds, or Long.MIN_VALUE if never
+    int index = index( ms - 1 );
+    return index >= 0 ? m_changeMS[index] : Long.MIN_VALUE;
+  }
+
+  /***************************************** getIntegral *****************************************/
+  public double getIntegral( long startMS, long endMS )
+  {
+    // return number-milliseconds available between start and end
+    return cumulative( endMS ) - cumulative( startMS );
+  }
+
+  /***************************************** cumulative ******************************************/
+  private double cumulative( long ms )
+  {
+    // return number-milliseconds available from first change (negative before) to specified milliseconds
+    int index = index( ms );
+    if ( index < 0 )
+      return m_changeMS.length == 0 ? m_initial * ms : -m_initial * (double) ( m_changeMS[0] - ms );
+
+    return m_integral[index] + m_number[index] * (double) ( ms - m_changeMS[index] );
+  }
+
+  /***************************************** getMaximum ******************************************/
+  public double getMaximum()
+  {
+    // return maximum number available at any time
+    return m_max;
+  }
+
+  /******************************************** equals *******************************************/
+  @Override
+  public boolean equals( Object other )
+  {
+    // return true if this availability and other availability are same
+    if ( other instanceof Availability )
+    {
+      Availability avail = (Availability) other;
+      return m_initial == avail.m_initial && Arrays.equals( m_changeMS, avail.m_changeMS )
+          && Arrays.equals( m_number, avail.m_number );
+    }
+
+    return false;
+  }
+
+  /****************************************** hashCode *******************************************/
+  @Override
+  public int hashCode()
+  {
+    // availability hash code is based on the same values as equals (adding zero so -0.0 hashes as 0.0)
+    int hash = Double.hashCode( m_initial + 0.0 );
+    hash = 31 * hash + Arrays.hashCode( m_changeMS );
+    return 31 * hash + Arrays.hashCode( m_number );
+  }
+
+}
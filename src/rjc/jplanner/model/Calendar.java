@@ -19,6 +19,7 @@
 package rjc.jplanner.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 
@@ -40,6 +41,15 @@ public class Calendar
   private Date               m_cycleAnchor; // anchor date of calendar cycle
   private ArrayList<Day>     m_normal;      // normal basic cycle days
   private HashMap<Date, Day> m_exceptions;  // exceptions override normal days
+  private int                m_index;       // position in plan calendar list, maintained by list
+
+  private long[]             m_cycleMS;        // cumulative worked milliseconds through normal cycle
+  private double[]           m_cycleWork;      // cumulative work-days through normal cycle
+  private int[]              m_exceptionDays;  // sorted epoch-days of exceptions
+  private Day[]              m_exceptionTypes; // day-types of sorted exceptions
+  private long[]             m_exceptionMS;    // cumulative worked milliseconds change from exceptions
+  private double[]           m_exceptionWork;  // cumulative work-days change from exceptions
+  private boolean            m_indexSearch;    // true if cumulative index never decreases so searchable
 
   public enum DefaultCalendarTypes
   {
@@ -52,6 +62,9 @@ public class Calendar
   public static final int SECTION_CYCLE_LEN  = 3;
   public static final int SECTION_NORMAL1    = 4;
 
+  private static final int    INDEX_MAX_DAYS     = 1 << 24; // maximum days searched using index
+  private static final double INDEX_TOLERANCE    = 1e-9;    // work-days rounding noise from index sums
+
   /**************************************** constructor ******************************************/
   public Calendar()
   {
@@ -238,7 +251,10 @@ public class Calendar
   /***************************************** setNormals ******************************************/
   public void setNormals( ArrayList<Day> normals )
   {
+    // set normal cycle days, which may affect any task
     m_normal = normals;
+    clearIndex();
+    JPlanner.plan.tasks.markAllChanged();
   }
 
   /**************************************** getExceptions ****************************************/
@@ -289,6 +305,13 @@ public class Calendar
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // calendar changes may affect any task
+    if ( section != SECTION_NAME )
+    {
+      clearIndex();
+      JPlanner.plan.tasks.markAllChanged();
+    }
   }
 
   /***************************************** isWorking *******************************************/
@@ -325,6 +348,20 @@ public class Calendar
     return m_normal.get( normal );
   }
 
+  /******************************************* getDay ********************************************/
+  public Day getDay( int epochday )
+  {
+    // return day-type for epoch-day using sorted exceptions, so no date needs creating
+    if ( !buildIndex( false ) )
+      return getDay( new Date( epochday ) );
+
+    int found = Arrays.binarySearch( m_exceptionDays, epochday );
+    if ( found >= 0 )
+      return m_exceptionTypes[found];
+
+    return m_normal.get( Math.floorMod( epochday - m_cycleAnchor.getEpochday(), m_normal.size() ) );
+  }
+
   /*************************************** getSectionName ****************************************/
   public static String getSectionName( int num )
   {
@@ -348,42 +385,65 @@ public class Calendar
   public DateTime getWorkDateTimeDown( DateTime dt )
   {
     // return date-time if working, otherwise last past working date-time
-    Date date = dt.getDate();
-    Time time = dt.getTime();
-    Day day = getDay( date );
-
-    Time newTime = day.getWorkTimeDown( time );
-    while ( newTime == null )
-    {
-      date.decrement();
-      day = getDay( date );
-
-      if ( day.isWorking() )
-        newTime = day.getEnd();
-    }
+    return new DateTime( getWorkDateTimeDownMS( dt.getMilliseconds() ) );
+  }
 
-    return new DateTime( date, newTime );
+  /************************************ getWorkDateTimeDownMS ************************************/
+  public long getWorkDateTimeDownMS( long ms )
+  {
+    // return epoch-milliseconds if working, otherwise last past working epoch-milliseconds
+    int epochday = (int) Math.floorDiv( ms, DateTime.MILLISECONDS_IN_DAY );
+    int time = getDay( epochday ).getWorkTimeDownMS( (int) Math.floorMod( ms, DateTime.MILLISECONDS_IN_DAY ) );
+    if ( time >= 0 )
+      return toMilliseconds( epochday, time );
+
+    // use cumulative index to jump over non-working days
+    int to = indexBackward( epochday - 1, 0.0, true );
+    if ( to != Integer.MIN_VALUE )
+      return toMilliseconds( to, getDay( to ).getEndMS() );
+
+    Day day;
+    do
+      day = getDay( --epochday );
+    while ( !day.isWorking() );
+
+    return toMilliseconds( epochday, day.getEndMS() );
   }
 
   /************************************* getWorkDateTimeUp ***************************************/
   public DateTime getWorkDateTimeUp( DateTime dt )
   {
     // return date-time if working, otherwise next future working date-time
-    Date date = dt.getDate();
-    Time time = dt.getTime();
-    Day day = getDay( date );
-
-    Time newTime = day.getWorkTimeUp( time );
-    while ( newTime == null )
-    {
-      date.increment();
-      day = getDay( date );
+    return new DateTime( getWorkDateTimeUpMS( dt.getMilliseconds() ) );
+  }
 
-      if ( day.isWorking() )
-        newTime = day.getStart();
-    }
+  /************************************* getWorkDateTimeUpMS *************************************/
+  public long getWorkDateTimeUpMS( long ms )
+  {
+    // return epoch-milliseconds if working, otherwise next future working epoch-milliseconds
+    int epochday = (int) Math.floorDiv( ms, DateTime.MILLISECONDS_IN_DAY );
+    int time = getDay( epochday ).getWorkTimeUpMS( (int) Math.floorMod( ms, DateTime.MILLISECONDS_IN_DAY ) );
+    if ( time >= 0 )
+      return toMilliseconds( epochday, time );
+
+    // use cumulative index to jump over non-working days
+    int to = indexForward( epochday + 1, 0.0, true );
+    if ( to != Integer.MIN_VALUE )
+      return toMilliseconds( to, getDay( to ).getStartMS() );
+
+    Day day;
+    do
+      day = getDay( ++epochday );
+    while ( !day.isWorking() );
+
+    return toMilliseconds( epochday, day.getStartMS() );
+  }
 
-    return new DateTime( date, newTime );
+  /*************************************** toMilliseconds ****************************************/
+  private static long toMilliseconds( int epochday, int time )
+  {
+    // return epoch-milliseconds for epoch-day and day-milliseconds
+    return epochday * DateTime.MILLISECONDS_IN_DAY + time;
   }
 
   /****************************************** saveToXML ******************************************/
@@ -431,156 +491,229 @@ public class Calendar
       return start;
 
     // return date-time moved by TimeSpan
-    if ( ts.getUnits() == TimeSpan.UNIT_SECONDS )
-      return workSeconds( start, ts.getNumber() );
-
-    if ( ts.getUnits() == TimeSpan.UNIT_MINUTES )
-      return workSeconds( start, ts.getNumber() * 60.0 );
-
-    if ( ts.getUnits() == TimeSpan.UNIT_HOURS )
-      return workSeconds( start, ts.getNumber() * 3600.0 );
+    char units = ts.getUnits();
+    if ( units == TimeSpan.UNIT_SECONDS || units == TimeSpan.UNIT_MINUTES || units == TimeSpan.UNIT_HOURS
+        || units == TimeSpan.UNIT_DAYS )
+      return new DateTime( workTimeSpanMS( start.getMilliseconds(), ts.getNumber(), units ) );
 
-    if ( ts.getUnits() == TimeSpan.UNIT_DAYS )
-      return workDays( start, ts.getNumber() );
-
-    if ( ts.getUnits() == TimeSpan.UNIT_WEEKS )
+    if ( units == TimeSpan.UNIT_WEEKS )
       return workWeeks( start, ts.getNumber() );
 
-    if ( ts.getUnits() == TimeSpan.UNIT_MONTHS )
+    if ( units == TimeSpan.UNIT_MONTHS )
       return workMonths( start, ts.getNumber() );
 
-    if ( ts.getUnits() == TimeSpan.UNIT_YEARS )
+    if ( units == TimeSpan.UNIT_YEARS )
       return workYears( start, ts.getNumber() );
 
     // unknown time-span units - should never happen!
     throw new IllegalArgumentException( ts.toString() );
   }
 
-  /**************************************** workSeconds ******************************************/
-  private DateTime workSeconds( DateTime start, double secs )
+  /*************************************** workTimeSpanMS ****************************************/
+  public long workTimeSpanMS( long start, TimeSpan ts )
   {
-    // return date-time from start by specified number for worked seconds
-    Date date = start.getDate();
-    Time fromTime = start.getTime();
-    Day day = getDay( date );
+    // return epoch-milliseconds moved by time-span
+    return workTimeSpanMS( start, ts.getNumber(), ts.getUnits() );
+  }
+
+  /*************************************** workTimeSpanMS ****************************************/
+  public long workTimeSpanMS( long start, double number, char units )
+  {
+    // return epoch-milliseconds moved by time-span number and units
+    if ( number == 0.0 )
+      return start;
+
+    if ( units == TimeSpan.UNIT_SECONDS )
+      return workSecondsMS( start, number );
+
+    if ( units == TimeSpan.UNIT_MINUTES )
+      return workSecondsMS( start, number * 60.0 );
+
+    if ( units == TimeSpan.UNIT_HOURS )
+      return workSecondsMS( start, number * 3600.0 );
+
+    if ( units == TimeSpan.UNIT_DAYS )
+      return workDaysMS( start, number );
+
+    // weeks, months and years are calendar arithmetic on date-times
+    return workTimeSpan( new DateTime( start ), new TimeSpan( number, units ) ).getMilliseconds();
+  }
+
+  /**************************************** workSecondsMS ****************************************/
+  private long workSecondsMS( long start, double secs )
+  {
+    // return epoch-milliseconds from start by specified number for worked seconds
+    int epochday = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int fromTime = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
+    Day day = getDay( epochday );
     int ms = (int) Math.round( secs * 1000.0 );
 
     if ( ms > 0 )
     {
       // milliseconds is positive, so go forwards in time
-      Time time = day.millisecondsForward( fromTime, ms );
+      int time = day.millisecondsForwardMS( fromTime, ms );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return toMilliseconds( epochday, time );
 
       // if not valid time, move to next date
       ms -= day.millisecondsToGo( fromTime );
-      date.increment();
-      day = getDay( date );
-      while ( ms >= day.milliseconds() )
+      epochday++;
+
+      // use cumulative index to jump to date where milliseconds run out
+      int to = indexForward( epochday, ms, true );
+      if ( to != Integer.MIN_VALUE )
+      {
+        ms -= (int) ( cumulative( to, true ) - cumulative( epochday, true ) );
+        epochday = to;
+        day = getDay( epochday );
+      }
+      else
       {
-        ms -= day.milliseconds();
-        date.increment();
-        day = getDay( date );
+        // beyond index so step day by day
+        day = getDay( epochday );
+        while ( ms >= day.milliseconds() )
+        {
+          ms -= day.milliseconds();
+          day = getDay( ++epochday );
+        }
       }
 
       if ( ms == 0 )
-        return new DateTime( date, day.getStart() );
+        return toMilliseconds( epochday, day.getStartMS() );
       else
-        return new DateTime( date, day.millisecondsForward( ms ) );
+        return toMilliseconds( epochday, day.millisecondsForwardMS( 0, ms ) );
     }
     else
     {
       // milliseconds is negative, so go backwards in time
       ms = -ms;
-      Time time = day.millisecondsBackward( fromTime, ms );
+      int time = day.millisecondsBackwardMS( fromTime, ms );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return toMilliseconds( epochday, time );
 
       // if not valid time, move to previous date
       ms -= day.millisecondsDone( fromTime );
-      date.decrement();
-      day = getDay( date );
-      while ( ms >= day.milliseconds() )
+      epochday--;
+
+      // use cumulative index to jump to date where milliseconds run out
+      int to = indexBackward( epochday, ms, true );
+      if ( to != Integer.MIN_VALUE )
+      {
+        ms -= (int) ( cumulative( epochday + 1, true ) - cumulative( to + 1, true ) );
+        epochday = to;
+        day = getDay( epochday );
+      }
+      else
       {
-        ms -= day.milliseconds();
-        date.decrement();
-        day = getDay( date );
+        // beyond index so step day by day
+        day = getDay( epochday );
+        while ( ms >= day.milliseconds() )
+        {
+          ms -= day.milliseconds();
+          day = getDay( --epochday );
+        }
       }
 
       if ( ms == 0 )
-        return new DateTime( date, day.getEnd() );
+        return toMilliseconds( epochday, day.getEndMS() );
       else
-        return new DateTime( date, day.millisecondsBackward( ms ) );
+        return toMilliseconds( epochday, day.millisecondsBackwardMS( Time.MILLISECONDS_IN_DAY, ms ) );
     }
   }
 
-  /****************************************** workDays *******************************************/
-  private DateTime workDays( DateTime start, double work )
+  /***************************************** workDaysMS ******************************************/
+  private long workDaysMS( long start, double work )
   {
-    // return date-time from start by specified number for work equivalent days
+    // return epoch-milliseconds from start by specified number for work equivalent days
     if ( work == 0.0 )
       return start;
 
-    Date date = start.getDate();
-    Time fromTime = start.getTime();
-    Day day = getDay( date );
+    int epochday = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int fromTime = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
+    Day day = getDay( epochday );
 
     if ( work > 0 )
     {
       // work is positive, so go forwards in time
-      Time time = null;
+      int time = -1;
       if ( day.getNumberOfPeriods() > 0 )
-        time = day.workForward( fromTime, work );
+        time = day.workForwardMS( fromTime, work );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return toMilliseconds( epochday, time );
 
       // if not valid time, move to next date
       if ( day.getNumberOfPeriods() > 0 )
         work -= day.workToGo( fromTime );
-      date.increment();
-      day = getDay( date );
-      while ( work > day.getWork() )
+      epochday++;
+
+      // use cumulative index to jump to date where work runs out
+      int to = indexForward( epochday, work, false );
+      if ( to != Integer.MIN_VALUE )
+      {
+        work -= cumulative( to, false ) - cumulative( epochday, false );
+        epochday = to;
+        day = getDay( epochday );
+        work = snapWork( work, day.getWork() );
+      }
+      else
       {
-        if ( day.getNumberOfPeriods() > 0 )
-          work -= day.getWork();
-        date.increment();
-        day = getDay( date );
+        // beyond index so step day by day
+        day = getDay( epochday );
+        while ( work > day.getWork() )
+        {
+          if ( day.getNumberOfPeriods() > 0 )
+            work -= day.getWork();
+          day = getDay( ++epochday );
+        }
       }
 
-      return new DateTime( date, day.workForward( work ) );
+      return toMilliseconds( epochday, day.workForwardMS( work ) );
     }
     else
     {
       // work is negative, so go backwards in time
       work = -work;
-      Time time = null;
+      int time = -1;
       if ( day.getNumberOfPeriods() > 0 )
-        time = day.workBackward( fromTime, work );
+        time = day.workBackwardMS( fromTime, work );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return toMilliseconds( epochday, time );
 
       // if not valid time, move to previous date
       if ( day.getNumberOfPeriods() > 0 )
         work -= day.workDone( fromTime );
-      date.decrement();
-      day = getDay( date );
-      while ( work > day.getWork() )
+      epochday--;
+
+      // use cumulative index to jump to date where work runs out
+      int to = indexBackward( epochday, work, false );
+      if ( to != Integer.MIN_VALUE )
       {
-        if ( day.getNumberOfPeriods() > 0 )
-          work -= day.getWork();
-        date.decrement();
-        day = getDay( date );
+        work -= cumulative( epochday + 1, false ) - cumulative( to + 1, false );
+        epochday = to;
+        day = getDay( epochday );
+        work = snapWork( work, day.getWork() );
+      }
+      else
+      {
+        // beyond index so step day by day
+        day = getDay( epochday );
+        while ( work > day.getWork() )
+        {
+          if ( day.getNumberOfPeriods() > 0 )
+            work -= day.getWork();
+          day = getDay( --epochday );
+        }
       }
 
-      return new DateTime( date, day.workBackward( work ) );
+      return toMilliseconds( epochday, day.workBackwardMS( work ) );
     }
   }
 
@@ -629,28 +762,214 @@ public class Calendar
   public TimeSpan workBetween( DateTime start, DateTime end )
   {
     // return number of work equivalent days between the two date-times
-    Date sd = start.getDate();
-    Time st = start.getTime();
+    return new TimeSpan( workBetweenMS( start.getMilliseconds(), end.getMilliseconds() ), TimeSpan.UNIT_DAYS );
+  }
+
+  /**************************************** workBetweenMS ****************************************/
+  public double workBetweenMS( long start, long end )
+  {
+    // return number of work equivalent days between the two epoch-milliseconds
+    int sd = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int st = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
     Day day = getDay( sd );
 
-    Date ed = end.getDate();
-    Time et = end.getTime();
+    int ed = (int) Math.floorDiv( end, DateTime.MILLISECONDS_IN_DAY );
+    int et = (int) Math.floorMod( end, DateTime.MILLISECONDS_IN_DAY );
 
     // if start date same as end date, just work in day
-    if ( sd.equals( ed ) )
-      return new TimeSpan( day.workDone( et ) - day.workDone( st ), TimeSpan.UNIT_DAYS );
+    if ( sd == ed )
+      return day.workDone( et ) - day.workDone( st );
 
-    // add together work across the days
+    // add together work across the days, using cumulative index for whole days if possible
     double work = day.workToGo( st );
-    sd.increment();
-    while ( !sd.equals( ed ) )
+    sd++;
+    if ( ed >= sd && buildIndex( false ) )
+      work += cumulative( ed, false ) - cumulative( sd, false );
+    else
+      while ( sd != ed )
+        work += getDay( sd++ ).getWork();
+    work += getDay( ed ).workDone( et );
+
+    return work;
+  }
+
+  /***************************************** clearIndex ******************************************/
+  void clearIndex()
+  {
+    // discard cumulative work index, rebuilt when next needed
+    m_cycleMS = null;
+    m_cycleWork = null;
+  }
+
+  /**************************************** prepareIndex *****************************************/
+  void prepareIndex()
+  {
+    // build cumulative work index now, so threads sharing calendar afterwards only read it
+    buildIndex( false );
+  }
+
+  /***************************************** buildIndex ******************************************/
+  private boolean buildIndex( boolean search )
+  {
+    // ensure cumulative work index exists, return false if not usable (for searching if requested)
+    if ( m_normal.isEmpty() )
+      return false;
+    if ( m_cycleMS != null )
+      return m_indexSearch || !search;
+
+    // a scheduling run only reads the index built when prepared, as calendar is shared between threads
+    Scheduling.checkPrepared( this );
+
+    // accumulate worked milliseconds and work-days through normal cycle
+    int size = m_normal.size();
+    m_cycleMS = new long[size + 1];
+    m_cycleWork = new double[size + 1];
+    for ( int num = 0; num < size; num++ )
     {
-      work += getDay( sd ).getWork();
-      sd.increment();
+      Day day = m_normal.get( num );
+      m_cycleMS[num + 1] = m_cycleMS[num] + day.milliseconds();
+      m_cycleWork[num + 1] = m_cycleWork[num] + day.getWork();
     }
-    work += getDay( ed ).workDone( et );
 
-    return new TimeSpan( work, TimeSpan.UNIT_DAYS );
+    // sort exceptions and accumulate how much they change work compared to normal cycle
+    m_exceptionDays = new int[m_exceptions.size()];
+    int count = 0;
+    for ( Date date : m_exceptions.keySet() )
+      m_exceptionDays[count++] = date.getEpochday();
+    Arrays.sort( m_exceptionDays );
+
+    m_exceptionTypes = new Day[count];
+    m_exceptionMS = new long[count + 1];
+    m_exceptionWork = new double[count + 1];
+    for ( int num = 0; num < count; num++ )
+    {
+      Date date = new Date( m_exceptionDays[num] );
+      Day normal = m_normal.get( Math.floorMod( m_exceptionDays[num] - m_cycleAnchor.getEpochday(), size ) );
+      Day exception = m_exceptions.get( date );
+      m_exceptionTypes[num] = exception;
+      m_exceptionMS[num + 1] = m_exceptionMS[num] + exception.milliseconds() - normal.milliseconds();
+      m_exceptionWork[num + 1] = m_exceptionWork[num] + exception.getWork() - normal.getWork();
+    }
+
+    // searching only matches day stepping if no day has negative work, or work without being working
+    ArrayList<Day> days = new ArrayList<Day>( m_normal );
+    days.addAll( m_exceptions.values() );
+    m_indexSearch = true;
+    for ( Day day : days )
+      if ( day.milliseconds() < 0 || day.getWork() < 0.0 || day.isWorking() != day.milliseconds() > 0
+          || ( !day.isWorking() && day.getWork() != 0.0 ) )
+        m_indexSearch = false;
+
+    return m_indexSearch || !search;
+  }
+
+  /************************************** exceptionsBefore ***************************************/
+  private int exceptionsBefore( int epochday )
+  {
+    // return number of exceptions before epoch-day using binary search of sorted exceptions
+    int found = Arrays.binarySearch( m_exceptionDays, epochday );
+    return found < 0 ? -found - 1 : found;
+  }
+
+  /***************************************** cumulative ******************************************/
+  private double cumulative( int epochday, boolean ms )
+  {
+    // return worked milliseconds or work-days from cycle anchor to start of epoch-day
+    int size = m_normal.size();
+    long offset = (long) epochday - m_cycleAnchor.getEpochday();
+    long cycles = Math.floorDiv( offset, size );
+    int part = Math.floorMod( offset, size );
+    int exceptions = exceptionsBefore( epochday );
+
+    if ( ms )
+      return cycles * m_cycleMS[size] + m_cycleMS[part] + m_exceptionMS[exceptions];
+    return cycles * m_cycleWork[size] + m_cycleWork[part] + m_exceptionWork[exceptions];
+  }
+
+  /******************************************* passed ********************************************/
+  private static boolean passed( double done, double amount, boolean ms )
+  {
+    // return true if done exceeds amount of milliseconds or reaches amount of work-days
+    return ms ? done > amount : done >= amount - INDEX_TOLERANCE;
+  }
+
+  /****************************************** snapWork *******************************************/
+  private static double snapWork( double work, double dayWork )
+  {
+    // remove rounding noise from index sums so work ending on day boundary gives exact start or end
+    if ( Math.abs( work ) < INDEX_TOLERANCE )
+      return 0.0;
+    if ( Math.abs( work - dayWork ) < INDEX_TOLERANCE )
+      return dayWork;
+    return work;
+  }
+
+  /**************************************** indexForward *****************************************/
+  private int indexForward( int from, double amount, boolean ms )
+  {
+    // return first epoch-day where amount runs out going forwards, or MIN_VALUE if not indexable
+    if ( !buildIndex( true ) )
+      return Integer.MIN_VALUE;
+
+    // double span until amount passed, skipping whole cycles between exceptions in constant time
+    double base = cumulative( from, ms );
+    int span = m_normal.size();
+    while ( true )
+    {
+      if ( span > INDEX_MAX_DAYS || (long) from + span >= Integer.MAX_VALUE )
+        return Integer.MIN_VALUE;
+      if ( passed( cumulative( from + span + 1, ms ) - base, amount, ms ) )
+        break;
+      span *= 2;
+    }
+
+    // binary search for first day which passes amount
+    int low = from;
+    int high = from + span;
+    while ( low < high )
+    {
+      int mid = low + ( high - low ) / 2;
+      if ( passed( cumulative( mid + 1, ms ) - base, amount, ms ) )
+        high = mid;
+      else
+        low = mid + 1;
+    }
+
+    return low;
+  }
+
+  /**************************************** indexBackward ****************************************/
+  private int indexBackward( int from, double amount, boolean ms )
+  {
+    // return first epoch-day where amount runs out going backwards, or MIN_VALUE if not indexable
+    if ( !buildIndex( true ) )
+      return Integer.MIN_VALUE;
+
+    // double span until amount passed, skipping whole cycles between exceptions in constant time
+    double base = cumulative( from + 1, ms );
+    int span = m_normal.size();
+    while ( true )
+    {
+      if ( span > INDEX_MAX_DAYS || (long) from - span <= Integer.MIN_VALUE )
+        return Integer.MIN_VALUE;
+      if ( passed( base - cumulative( from - span, ms ), amount, ms ) )
+        break;
+      span *= 2;
+    }
+
+    // binary search for last day which passes amount
+    int low = from - span;
+    int high = from;
+    while ( low < high )
+    {
+      int mid = high - ( high - low ) / 2;
+      if ( passed( base - cumulative( mid, ms ), amount, ms ) )
+        low = mid;
+      else
+        high = mid - 1;
+    }
+
+    return low;
   }
 
   /****************************************** getIndex *******************************************/
@@ -659,4 +978,18 @@ public class Calendar
     return JPlanner.plan.getIndex( this );
   }
 
+  /**************************************** getListIndex *****************************************/
+  int getListIndex()
+  {
+    // return position last recorded by list, not necessarily still valid
+    return m_index;
+  }
+
+  /**************************************** setListIndex *****************************************/
+  void setListIndex( int index )
+  {
+    // record position in list
+    m_index = index;
+  }
+
 }
@@ -18,8 +18,6 @@
 
 package rjc.jplanner.model;
 
-import java.util.ArrayList;
-
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -32,7 +30,7 @@ import rjc.jplanner.model.Calendar.DefaultCalendarTypes;
 /************************** Holds the complete list of plan calendars ****************************/
 /*************************************************************************************************/
 
-public class Calendars extends ArrayList<Calendar>
+public class Calendars extends IndexedList<Calendar>
 {
   private static final long serialVersionUID = 1L;
 
@@ -118,4 +116,20 @@ public class Calendars extends ArrayList<Calendar>
     return false;
   }
 
+  /****************************************** readIndex ******************************************/
+  @Override
+  protected int readIndex( Object item )
+  {
+    // return position held by item
+    return item instanceof Calendar ? ( (Calendar) item ).getListIndex() : -1;
+  }
+
+  /***************************************** writeIndex ******************************************/
+  @Override
+  protected void writeIndex( Calendar calendar, int index )
+  {
+    // record position in item
+    calendar.setListIndex( index );
+  }
+
 }
@@ -0,0 +1,279 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.Arrays;
+
+import rjc.jplanner.JPlanner;
+
+/*************************************************************************************************/
+/************************ Critical path with total and free float of tasks ***********************/
+/*************************************************************************************************/
+
+public class CriticalPath
+{
+  // all dates are held as work days on the plan default calendar after the earliest task start,
+  // early dates are the scheduled dates (so include task type and resource constraints) and
+  // late dates are found by one backward pass over the dependency graph in reverse topological order
+  private Task[]              m_tasks;       // tasks analysed, to detect tasks since moved or added
+  private double[]            m_totalFloat;  // work days each task can slip without delaying plan end
+  private double[]            m_freeFloat;   // work days each task can slip without delaying successors
+  private int                 m_critical;    // number of critical tasks
+
+  private static final double TOLERANCE = 1e-6; // float less than this is considered zero
+
+  private static final byte   FS        = 0;
+  private static final byte   SS        = 1;
+  private static final byte   SF        = 2;
+  private static final byte   FF        = 3;
+
+  /**************************************** constructor ******************************************/
+  CriticalPath( Tasks tasks )
+  {
+    // initialise arrays, tasks not analysed have NaN floats
+    int size = tasks.size();
+    m_tasks = tasks.toArray( new Task[size] );
+    m_totalFloat = new double[size];
+    m_freeFloat = new double[size];
+    Arrays.fill( m_totalFloat, Double.NaN );
+    Arrays.fill( m_freeFloat, Double.NaN );
+
+    // find earliest start to measure from, and latest end of non-summary tasks as plan end
+    long originMS = Long.MAX_VALUE;
+    long planEndMS = Long.MIN_VALUE;
+    for ( Task task : m_tasks )
+      if ( isScheduled( task ) )
+      {
+        originMS = Math.min( originMS, task.getStart().getMilliseconds() );
+        if ( !task.isSummary() )
+          planEndMS = Math.max( planEndMS, task.getEnd().getMilliseconds() );
+      }
+    if ( planEndMS == Long.MIN_VALUE )
+      return;
+
+    // forward pass, taking early dates from the schedule
+    Calendar cal = JPlanner.plan.getDefaultCalendar();
+    double[] es = new double[size];
+    double[] ef = new double[size];
+    for ( int index = 0; index < size; index++ )
+      if ( isScheduled( m_tasks[index] ) )
+      {
+        es[index] = cal.workBetweenMS( originMS, m_tasks[index].getStart().getMilliseconds() );
+        ef[index] = cal.workBetweenMS( originMS, m_tasks[index].getEnd().getMilliseconds() );
+      }
+    double planEnd = cal.workBetweenMS( originMS, planEndMS );
+
+    // gather links from each predecessor to its successors, with lags converted to work days
+    int[] first = new int[size + 1];
+    for ( Task task : m_tasks )
+      if ( isScheduled( task ) )
+        for ( int p = 0; p < task.getPredecessors().getCount(); p++ )
+        {
+          int pred = predecessor( task, p );
+          if ( pred >= 0 )
+            first[pred + 1]++;
+        }
+    for ( int index = 0; index < size; index++ )
+      first[index + 1] += first[index];
+
+    int[] next = Arrays.copyOf( first, size );
+    int[] linkTask = new int[first[size]];
+    byte[] linkType = new byte[first[size]];
+    double[] linkLag = new double[first[size]];
+    for ( int index = 0; index < size; index++ )
+      if ( isScheduled( m_tasks[index] ) )
+        for ( int p = 0; p < m_tasks[index].getPredecessors().getCount(); p++ )
+        {
+          int pred = predecessor( m_tasks[index], p );
+          if ( pred < 0 )
+            continue;
+
+          Predecessors.Predecessor link = m_tasks[index].getPredecessors().get( p );
+          int l = next[pred]++;
+          linkTask[l] = index;
+          linkType[l] = type( link.type );
+          if ( link.lag.getNumber() != 0.0 )
+          {
+            double anchor = linkType[l] == FS || linkType[l] == FF ? ef[pred] : es[pred];
+            long anchorMS = linkType[l] == FS || linkType[l] == FF ? m_tasks[pred].getEnd().getMilliseconds()
+                : m_tasks[pred].getStart().getMilliseconds();
+            linkLag[l] = cal.workBetweenMS( originMS, cal.workTimeSpanMS( anchorMS, link.lag ) ) - anchor;
+          }
+        }
+
+    // backward pass, each task exit node gives late finish and free float, and each summary entry
+    // node gives its late start as the earliest late start of its sub-tasks
+    double[] ls = new double[size];
+    double[] lf = new double[size];
+    Arrays.fill( ls, Double.POSITIVE_INFINITY );
+    int[] nodes = tasks.getGraph().getNodeOrder();
+    for ( int n = nodes.length - 1; n >= 0; n-- )
+    {
+      int node = nodes[n];
+      if ( node >= size )
+      {
+        int index = node - size;
+        if ( ls[index] == Double.POSITIVE_INFINITY )
+          ls[index] = lf[index] - ( ef[index] - es[index] );
+        propagate( ls, index );
+        continue;
+      }
+      if ( !isScheduled( m_tasks[node] ) )
+        continue;
+
+      // late finish limited by plan end, summary late finish, and each successor link
+      int summary = m_tasks[node].getSummaryStart();
+      boolean hasSummary = summary != node && summary >= 0 && summary < size && isScheduled( m_tasks[summary] );
+      double duration = ef[node] - es[node];
+      double late = hasSummary ? Math.min( planEnd, lf[summary] ) : planEnd;
+      double free = hasSummary ? ef[summary] + m_freeFloat[summary] - ef[node] : planEnd - ef[node];
+      for ( int l = first[node]; l < first[node + 1]; l++ )
+      {
+        int succ = linkTask[l];
+        double lag = linkLag[l];
+        switch ( linkType[l] )
+        {
+          case FS:
+            late = Math.min( late, ls[succ] - lag );
+            free = Math.min( free, es[succ] - lag - ef[node] );
+            break;
+          case SS:
+            late = Math.min( late, ls[succ] - lag + duration );
+            free = Math.min( free, es[succ] - lag - es[node] );
+            break;
+          case SF:
+            late = Math.min( late, lf[succ] - lag + duration );
+            free = Math.min( free, ef[succ] - lag - es[node] );
+            break;
+          default:
+            late = Math.min( late, lf[succ] - lag );
+            free = Math.min( free, ef[succ] - lag - ef[node] );
+            break;
+        }
+      }
+
+      lf[node] = late;
+      m_totalFloat[node] = late - ef[node];
+      m_freeFloat[node] = Math.min( free, m_totalFloat[node] );
+      if ( m_totalFloat[node] < TOLERANCE )
+        m_critical++;
+
+      // non-summary late start is final, summary late start is determined at its entry node
+      if ( !m_tasks[node].isSummary() )
+      {
+        ls[node] = late - duration;
+        propagate( ls, node );
+      }
+    }
+  }
+
+  /***************************************** isScheduled *****************************************/
+  private static boolean isScheduled( Task task )
+  {
+    // return true if task has been scheduled so can be analysed
+    return !task.isNull() && task.getStart() != null && task.getEnd() != null;
+  }
+
+  /***************************************** predecessor *****************************************/
+  private int predecessor( Task task, int p )
+  {
+    // return index of task's predecessor which can be analysed, otherwise -1
+    Task pred = task.getPredecessors().get( p ).task;
+    if ( pred == null || pred == task || !isScheduled( pred ) )
+      return -1;
+
+    int index = pred.getIndex();
+    return index < m_tasks.length && m_tasks[index] == pred ? index : -1;
+  }
+
+  /******************************************** type *********************************************/
+  private static byte type( String type )
+  {
+    // return link type code for predecessor type
+    if ( Predecessors.TYPE_START_START.equals( type ) )
+      return SS;
+    if ( Predecessors.TYPE_START_FINISH.equals( type ) )
+      return SF;
+    if ( Predecessors.TYPE_FINISH_FINISH.equals( type ) )
+      return FF;
+    return FS;
+  }
+
+  /****************************************** propagate ******************************************/
+  private void propagate( double[] ls, int index )
+  {
+    // lower late start of task's summary to task's late start if earlier
+    int summary = m_tasks[index].getSummaryStart();
+    if ( summary != index && summary >= 0 && summary < ls.length && ls[index] < ls[summary] )
+      ls[summary] = ls[index];
+  }
+
+  /******************************************** index ********************************************/
+  private int index( Task task )
+  {
+    // return index of task in analysis, or -1 if task not analysed
+    int index = task.getIndex();
+    if ( index < 0 || index >= m_tasks.length || m_tasks[index] != task || Double.isNaN( m_totalFloat[index] ) )
+      return -1;
+
+    return index;
+  }
+
+  /**************************************** getTotalFloat ****************************************/
+  public TimeSpan getTotalFloat( Task task )
+  {
+    // return work days task can slip without delaying plan end, or null if not analysed
+    int index = index( task );
+    return index < 0 ? null : new TimeSpan( m_totalFloat[index], TimeSpan.UNIT_DAYS );
+  }
+
+  /**************************************** getFreeFloat *****************************************/
+  public TimeSpan getFreeFloat( Task task )
+  {
+    // return work days task can slip without delaying any successor, or null if not analysed
+    int index = index( task );
+    return index < 0 ? null : new TimeSpan( m_freeFloat[index], TimeSpan.UNIT_DAYS );
+  }
+
+  /***************************************** isCritical ******************************************/
+  public boolean isCritical( Task task )
+  {
+    // return true if task has no total float, so any slip delays the plan end
+    int index = index( task );
+    return index >= 0 && m_totalFloat[index] < TOLERANCE;
+  }
+
+  /******************************************** size *********************************************/
+  public int size()
+  {
+    // return number of critical tasks (including summaries)
+    return m_critical;
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // convert to string
+    String hash = super.toString();
+    String id = hash.substring( hash.lastIndexOf( '.' ) + 1 );
+    return id + "[" + m_critical + " critical of " + m_tasks.length + " Tasks]";
+  }
+
+}
@@ -38,6 +38,10 @@ public class Day
   private ArrayList<DayWorkPeriod> m_periods; // list of work periods
 
   private int                      m_workMS;  // pre-calculated number of worked milliseconds in day-type
+  private int[]                    m_starts;  // pre-calculated work period start day-milliseconds
+  private int[]                    m_ends;    // pre-calculated work period end day-milliseconds
+  private int[]                    m_done;    // pre-calculated worked milliseconds before each period
+  private int                      m_index;   // position in plan day-type list, maintained by list
 
   public enum DefaultDayTypes
   {
@@ -57,7 +61,7 @@ public class Day
     m_name = "Null";
     m_work = 0.0;
     m_periods = new ArrayList<DayWorkPeriod>();
-    m_workMS = 0;
+    calcWorkMS();
   }
 
   /**************************************** constructor ******************************************/
@@ -228,6 +232,20 @@ public class Day
     return getStart( 0 );
   }
 
+  /****************************************** getEndMS *******************************************/
+  public int getEndMS()
+  {
+    // return end of working day as day-milliseconds
+    return m_ends[m_ends.length - 1];
+  }
+
+  /***************************************** getStartMS ******************************************/
+  public int getStartMS()
+  {
+    // return start of working day as day-milliseconds
+    return m_starts[0];
+  }
+
   /****************************************** getValue *******************************************/
   public Object getValue( int section )
   {
@@ -285,6 +303,14 @@ public class Day
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // day-type changes may affect any calendar and task
+    if ( section != SECTION_NAME )
+    {
+      for ( Calendar calendar : JPlanner.plan.calendars )
+        calendar.clearIndex();
+      JPlanner.plan.tasks.markAllChanged();
+    }
   }
 
   /***************************************** isWorking *******************************************/
@@ -318,20 +344,24 @@ public class Day
   {
     // if in work period, return original time, otherwise end of earlier period, or null
     int ms = time.getDayMilliseconds();
-    Time answer = null;
+    int p = search( m_ends, 0, m_ends.length, ms, true );
 
-    for ( DayWorkPeriod period : m_periods )
-    {
-      if ( ms <= period.m_start.getDayMilliseconds() )
-        return answer;
+    if ( p < m_ends.length && ms > m_starts[p] )
+      return time;
 
-      if ( ms <= period.m_end.getDayMilliseconds() )
-        return time;
+    return p > 0 ? m_periods.get( p - 1 ).m_end : null;
+  }
 
-      answer = period.m_end;
-    }
+  /************************************** getWorkTimeDownMS **************************************/
+  public int getWorkTimeDownMS( int ms )
+  {
+    // if in work period, return original day-milliseconds, otherwise end of earlier period, or -1
+    int p = search( m_ends, 0, m_ends.length, ms, true );
 
-    return answer;
+    if ( p < m_ends.length && ms > m_starts[p] )
+      return ms;
+
+    return p > 0 ? m_ends[p - 1] : -1;
   }
 
   /*************************************** getWorkTimeUp *****************************************/
@@ -339,17 +369,24 @@ public class Day
   {
     // if in work period, return original time, otherwise start of later period, or null
     int ms = time.getDayMilliseconds();
+    int p = search( m_ends, 0, m_ends.length, ms, false );
 
-    for ( DayWorkPeriod period : m_periods )
-    {
-      if ( ms < period.m_start.getDayMilliseconds() )
-        return period.m_start;
+    if ( p == m_ends.length )
+      return null;
 
-      if ( ms < period.m_end.getDayMilliseconds() )
-        return time;
-    }
+    return ms < m_starts[p] ? m_periods.get( p ).m_start : time;
+  }
 
-    return null;
+  /*************************************** getWorkTimeUpMS ***************************************/
+  public int getWorkTimeUpMS( int ms )
+  {
+    // if in work period, return original day-milliseconds, otherwise start of later period, or -1
+    int p = search( m_ends, 0, m_ends.length, ms, false );
+
+    if ( p == m_ends.length )
+      return -1;
+
+    return ms < m_starts[p] ? m_starts[p] : ms;
   }
 
   /****************************************** saveToXML ******************************************/
@@ -375,39 +412,68 @@ public class Day
   /***************************************** calcWorkMS ******************************************/
   private void calcWorkMS()
   {
-    // calculate pre-calculated worked milliseconds in day-type
-    m_workMS = 0;
+    // calculate period boundaries and worked milliseconds before each period for binary searching
+    int count = m_periods.size();
+    m_starts = new int[count];
+    m_ends = new int[count];
+    m_done = new int[count + 1];
+
+    for ( int p = 0; p < count; p++ )
+    {
+      m_starts[p] = m_periods.get( p ).m_start.getDayMilliseconds();
+      m_ends[p] = m_periods.get( p ).m_end.getDayMilliseconds();
+      m_done[p + 1] = m_done[p] + m_ends[p] - m_starts[p];
+    }
+
+    m_workMS = m_done[count];
+  }
+
+  /******************************************* search ********************************************/
+  private static int search( int[] array, int low, int high, long key, boolean inclusive )
+  {
+    // return first index from low to before high with value above (or equal if inclusive) key
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( array[mid] > key || ( inclusive && array[mid] == key ) )
+        high = mid;
+      else
+        low = mid + 1;
+    }
 
-    for ( DayWorkPeriod period : m_periods )
-      m_workMS += period.m_end.getDayMilliseconds() - period.m_start.getDayMilliseconds();
+    return low;
   }
 
   /*************************************** millisecondsDone **************************************/
   public int millisecondsDone( Time time )
   {
-    // return number of ms done from 00:00 to specified time
-    int ms = time.getDayMilliseconds();
-    int done = 0;
+    return millisecondsDone( time.getDayMilliseconds() );
+  }
 
-    for ( DayWorkPeriod period : m_periods )
-    {
-      if ( ms <= period.m_start.getDayMilliseconds() )
-        return done;
+  public int millisecondsDone( int ms )
+  {
+    // return number of ms done from 00:00 to specified day-milliseconds
+    int p = search( m_ends, 0, m_ends.length, ms, false );
 
-      if ( ms < period.m_end.getDayMilliseconds() )
-        return done + ms - period.m_start.getDayMilliseconds();
+    if ( p == m_ends.length )
+      return m_workMS;
 
-      done += period.m_end.getDayMilliseconds() - period.m_start.getDayMilliseconds();
-    }
+    if ( ms <= m_starts[p] )
+      return m_done[p];
 
-    return done;
+    return m_done[p] + ms - m_starts[p];
   }
 
   /*************************************** millisecondsToGo **************************************/
   public int millisecondsToGo( Time time )
   {
-    // return number of ms work remaining from specified time to 24:00
-    return m_workMS - millisecondsDone( time );
+    return millisecondsToGo( time.getDayMilliseconds() );
+  }
+
+  public int millisecondsToGo( int ms )
+  {
+    // return number of ms work remaining from specified day-milliseconds to 24:00
+    return m_workMS - millisecondsDone( ms );
   }
 
   /********************************************* work ********************************************/
@@ -426,14 +492,24 @@ public class Day
   /******************************************* workToGo ******************************************/
   public double workToGo( Time from )
   {
-    // return number of work equivalent days remaining from specified time to 24:00
+    return workToGo( from.getDayMilliseconds() );
+  }
+
+  public double workToGo( int from )
+  {
+    // return number of work equivalent days remaining from specified day-milliseconds to 24:00
     return m_work - workDone( from );
   }
 
   /******************************************* workDone ******************************************/
   public double workDone( Time from )
   {
-    // return number of work equivalent days done from 00:00 to specified time
+    return workDone( from.getDayMilliseconds() );
+  }
+
+  public double workDone( int from )
+  {
+    // return number of work equivalent days done from 00:00 to specified day-milliseconds
     if ( m_workMS == 0 )
       return 0.0;
 
@@ -457,7 +533,8 @@ public class Day
 
   public Time workForward( int from, double work )
   {
-    return millisecondsForward( from, (int) ( work * m_workMS / m_work ) );
+    int time = workForwardMS( from, work );
+    return time < 0 ? null : Time.fromMilliseconds( time );
   }
 
   /***************************************** workBackward ****************************************/
@@ -477,7 +554,44 @@ public class Day
 
   public Time workBackward( int from, double work )
   {
-    return millisecondsBackward( from, (int) ( work * m_workMS / m_work ) );
+    int time = workBackwardMS( from, work );
+    return time < 0 ? null : Time.fromMilliseconds( time );
+  }
+
+  /**************************************** workForwardMS ****************************************/
+  public int workForwardMS( double work )
+  {
+    // return day-milliseconds after whole day work from 00:00, or -1 if beyond day
+    if ( work == 0.0 )
+      return getStartMS();
+    if ( work == m_work )
+      return getEndMS();
+    return workForwardMS( 0, work );
+  }
+
+  public int workForwardMS( int from, double work )
+  {
+    // convert work to milliseconds, any more than whole day cannot finish in day
+    long ms = Math.round( work * m_workMS / m_work );
+    return ms > m_workMS ? -1 : millisecondsForwardMS( from, (int) ms );
+  }
+
+  /*************************************** workBackwardMS ****************************************/
+  public int workBackwardMS( double work )
+  {
+    // return day-milliseconds after whole day work back from 24:00, or -1 if before day
+    if ( work == 0.0 )
+      return getEndMS();
+    if ( work == m_work )
+      return getStartMS();
+    return workBackwardMS( Time.MILLISECONDS_IN_DAY, work );
+  }
+
+  public int workBackwardMS( int from, double work )
+  {
+    // convert work to milliseconds, any more than whole day cannot finish in day
+    long ms = Math.round( work * m_workMS / m_work );
+    return ms > m_workMS ? -1 : millisecondsBackwardMS( from, (int) ms );
   }
 
   /*************************************** workMilliseconds **************************************/
@@ -507,21 +621,24 @@ public class Day
   public Time millisecondsForward( int from, int ms )
   {
     // work forwards specified number of ms
-    for ( DayWorkPeriod period : m_periods )
-    {
-      if ( period.m_end.getDayMilliseconds() < from )
-        continue;
-
-      if ( from < period.m_start.getDayMilliseconds() )
-        from = period.m_start.getDayMilliseconds();
+    int time = millisecondsForwardMS( from, ms );
+    return time < 0 ? null : Time.fromMilliseconds( time );
+  }
 
-      if ( from + ms <= period.m_end.getDayMilliseconds() )
-        return Time.fromMilliseconds( from + ms );
+  /************************************ millisecondsForwardMS ************************************/
+  public int millisecondsForwardMS( int from, int ms )
+  {
+    // work forwards specified number of ms returning day-milliseconds, or -1 if beyond day
+    int p = search( m_ends, 0, m_ends.length, from, true );
+    if ( p == m_ends.length )
+      return -1;
 
-      ms -= period.m_end.getDayMilliseconds() - from;
-    }
+    long target = (long) m_done[p] + Math.max( from - m_starts[p], 0 ) + ms;
+    if ( target > m_workMS )
+      return -1;
 
-    return null;
+    int q = search( m_done, p + 1, m_done.length, target, true ) - 1;
+    return (int) ( m_starts[q] + target - m_done[q] );
   }
 
   /************************************* millisecondsBackward ************************************/
@@ -538,23 +655,24 @@ public class Day
   public Time millisecondsBackward( int from, int ms )
   {
     // work backwards specified number of ms
-    for ( int p = m_periods.size() - 1; p >= 0; p-- )
-    {
-      DayWorkPeriod period = m_periods.get( p );
-
-      if ( period.m_start.getDayMilliseconds() > from )
-        continue;
+    int time = millisecondsBackwardMS( from, ms );
+    return time < 0 ? null : Time.fromMilliseconds( time );
+  }
 
-      if ( from > period.m_end.getDayMilliseconds() )
-        from = period.m_end.getDayMilliseconds();
+  /*********************************** millisecondsBackwardMS ************************************/
+  public int millisecondsBackwardMS( int from, int ms )
+  {
+    // work backwards specified number of ms returning day-milliseconds, or -1 if before day
+    int p = search( m_starts, 0, m_starts.length, from, false ) - 1;
+    if ( p < 0 )
+      return -1;
 
-      if ( from - ms >= period.m_start.getDayMilliseconds() )
-        return Time.fromMilliseconds( from - ms );
+    long target = (long) m_done[p] + Math.min( from, m_ends[p] ) - m_starts[p] - ms;
+    if ( target < 0 )
+      return -1;
 
-      ms -= from - period.m_start.getDayMilliseconds();
-    }
-
-    return null;
+    int q = search( m_done, 0, p + 1, target, false ) - 1;
+    return (int) ( m_starts[q] + target - m_done[q] );
   }
 
   /***************************************** milliseconds ****************************************/
@@ -591,4 +709,18 @@ public class Day
     return JPlanner.plan.getIndex( this );
   }
 
+  /**************************************** getListIndex *****************************************/
+  int getListIndex()
+  {
+    // return position last recorded by list, not necessarily still valid
+    return m_index;
+  }
+
+  /**************************************** setListIndex *****************************************/
+  void setListIndex( int index )
+  {
+    // record position in list
+    m_index = index;
+  }
+
 }
\ No newline at end of file
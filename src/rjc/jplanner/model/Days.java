@@ -18,8 +18,6 @@
 
 package rjc.jplanner.model;
 
-import java.util.ArrayList;
-
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -32,7 +30,7 @@ import rjc.jplanner.model.Day.DefaultDayTypes;
 /************************** Holds the complete list of plan day-types ****************************/
 /*************************************************************************************************/
 
-public class Days extends ArrayList<Day>
+public class Days extends IndexedList<Day>
 {
   private static final long serialVersionUID = 1L;
 
@@ -118,4 +116,20 @@ public class Days extends ArrayList<Day>
     return null;
   }
 
+  /****************************************** readIndex ******************************************/
+  @Override
+  protected int readIndex( Object item )
+  {
+    // return position held by item
+    return item instanceof Day ? ( (Day) item ).getListIndex() : -1;
+  }
+
+  /***************************************** writeIndex ******************************************/
+  @Override
+  protected void writeIndex( Day day, int index )
+  {
+    // record position in item
+    day.setListIndex( index );
+  }
+
 }
@@ -0,0 +1,116 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+/*************************************************************************************************/
+/************ Three-point task duration estimate of optimistic, likely and pessimistic ***********/
+/*************************************************************************************************/
+
+public class Estimate
+{
+  private TimeSpan m_optimistic;  // shortest duration expected
+  private TimeSpan m_likely;      // most likely duration
+  private TimeSpan m_pessimistic; // longest duration expected
+
+  /**************************************** constructor ******************************************/
+  public Estimate( String text )
+  {
+    // construct from text "optimistic, likely, pessimistic" e.g. "3 d, 5 d, 10 d"
+    String[] parts = text.split( "," );
+    if ( parts.length != 3 )
+      throw new IllegalArgumentException( "Need optimistic, likely and pessimistic durations" );
+
+    m_optimistic = new TimeSpan( parts[0] );
+    m_likely = new TimeSpan( parts[1] );
+    m_pessimistic = new TimeSpan( parts[2] );
+
+    // durations must be in same units to be compared, and in ascending order
+    if ( m_likely.getUnits() != m_optimistic.getUnits() || m_pessimistic.getUnits() != m_optimistic.getUnits() )
+      throw new IllegalArgumentException( "Durations must have same units" );
+    if ( m_optimistic.getNumber() < 0.0 )
+      throw new IllegalArgumentException( "Optimistic duration is negative" );
+    if ( m_likely.getNumber() < m_optimistic.getNumber() || m_pessimistic.getNumber() < m_likely.getNumber() )
+      throw new IllegalArgumentException( "Durations not in ascending order" );
+  }
+
+  /******************************************** errors *******************************************/
+  public static String errors( String text )
+  {
+    // return error message if text is not a valid estimate, otherwise null
+    try
+    {
+      new Estimate( text );
+      return null;
+    }
+    catch ( IllegalArgumentException exception )
+    {
+      return exception.getMessage();
+    }
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // return estimate as text that can be parsed back
+    return m_optimistic + ", " + m_likely + ", " + m_pessimistic;
+  }
+
+  /**************************************** getOptimistic ****************************************/
+  public TimeSpan getOptimistic()
+  {
+    return m_optimistic;
+  }
+
+  /****************************************** getLikely ******************************************/
+  public TimeSpan getLikely()
+  {
+    return m_likely;
+  }
+
+  /*************************************** getPessimistic ****************************************/
+  public TimeSpan getPessimistic()
+  {
+    return m_pessimistic;
+  }
+
+  /******************************************** equals *******************************************/
+  @Override
+  public boolean equals( Object other )
+  {
+    // return true if this estimate and other estimate are same
+    if ( other instanceof Estimate )
+    {
+      Estimate estimate = (Estimate) other;
+      return m_optimistic.equals( estimate.m_optimistic ) && m_likely.equals( estimate.m_likely )
+          && m_pessimistic.equals( estimate.m_pessimistic );
+    }
+
+    return false;
+  }
+
+  /****************************************** hashCode *******************************************/
+  @Override
+  public int hashCode()
+  {
+    // durations are only equal within a tolerance, so estimate hash code is based on the units
+    return m_optimistic.getUnits();
+  }
+
+}
@@ -0,0 +1,194 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/*************************************************************************************************/
+/******************* List of plan items where each item holds its own position *******************/
+/*************************************************************************************************/
+
+public abstract class IndexedList<E> extends ArrayList<E>
+{
+  private static final long serialVersionUID = 1L;
+
+  /****************************************** readIndex ******************************************/
+  protected abstract int readIndex( Object item );
+
+  /***************************************** writeIndex ******************************************/
+  protected abstract void writeIndex( E item, int index );
+
+  /******************************************* reindex *******************************************/
+  private void reindex( int from )
+  {
+    // record position in each item from specified position to end of list
+    for ( int index = from; index < size(); index++ )
+      writeIndex( get( index ), index );
+  }
+
+  /******************************************* indexOf *******************************************/
+  @Override
+  public int indexOf( Object item )
+  {
+    // use position held by item if still valid, otherwise search list
+    if ( item != null )
+    {
+      int index = readIndex( item );
+      if ( index >= 0 && index < size() && get( index ) == item )
+        return index;
+    }
+
+    return super.indexOf( item );
+  }
+
+  /********************************************* add *********************************************/
+  @Override
+  public boolean add( E item )
+  {
+    // add item to end of list
+    super.add( item );
+    writeIndex( item, size() - 1 );
+    return true;
+  }
+
+  /********************************************* add *********************************************/
+  @Override
+  public void add( int index, E item )
+  {
+    // insert item, moving later items down
+    super.add( index, item );
+    reindex( index );
+  }
+
+  /******************************************* addAll ********************************************/
+  @Override
+  public boolean addAll( Collection<? extends E> items )
+  {
+    // add items to end of list
+    int from = size();
+    boolean changed = super.addAll( items );
+    reindex( from );
+    return changed;
+  }
+
+  /******************************************* addAll ********************************************/
+  @Override
+  public boolean addAll( int index, Collection<? extends E> items )
+  {
+    // insert items, moving later items down
+    boolean changed = super.addAll( index, items );
+    reindex( index );
+    return changed;
+  }
+
+  /********************************************* set *********************************************/
+  @Override
+  public E set( int index, E item )
+  {
+    // replace item at specified position
+    E old = super.set( index, item );
+    writeIndex( item, index );
+    return old;
+  }
+
+  /******************************************* remove ********************************************/
+  @Override
+  public E remove( int index )
+  {
+    // remove item, moving later items up
+    E old = super.remove( index );
+    reindex( index );
+    return old;
+  }
+
+  /******************************************* remove ********************************************/
+  @Override
+  public boolean remove( Object item )
+  {
+    // remove item if in list, moving later items up
+    int index = indexOf( item );
+    if ( index < 0 )
+      return false;
+
+    remove( index );
+    return true;
+  }
+
+  /****************************************** removeIf *******************************************/
+  @Override
+  public boolean removeIf( Predicate<? super E> filter )
+  {
+    // remove items matching filter, updating positions of remaining items
+    boolean changed = super.removeIf( filter );
+    reindex( 0 );
+    return changed;
+  }
+
+  /****************************************** removeAll ******************************************/
+  @Override
+  public boolean removeAll( Collection<?> items )
+  {
+    // remove specified items, updating positions of remaining items
+    boolean changed = super.removeAll( items );
+    reindex( 0 );
+    return changed;
+  }
+
+  /****************************************** retainAll ******************************************/
+  @Override
+  public boolean retainAll( Collection<?> items )
+  {
+    // remove all except specified items, updating positions of remaining items
+    boolean changed = super.retainAll( items );
+    reindex( 0 );
+    return changed;
+  }
+
+  /***************************************** removeRange *****************************************/
+  @Override
+  protected void removeRange( int from, int to )
+  {
+    // remove range of items, moving later items up
+    super.removeRange( from, to );
+    reindex( from );
+  }
+
+  /***************************************** replaceAll ******************************************/
+  @Override
+  public void replaceAll( UnaryOperator<E> operator )
+  {
+    // replace every item, recording positions in new items
+    super.replaceAll( operator );
+    reindex( 0 );
+  }
+
+  /******************************************** sort *********************************************/
+  @Override
+  public void sort( Comparator<? super E> comparator )
+  {
+    // sort items, updating positions
+    super.sort( comparator );
+    reindex( 0 );
+  }
+
+}
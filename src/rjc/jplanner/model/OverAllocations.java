@@ -0,0 +1,210 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/*************************************************************************************************/
+/******************* Periods when resources are used beyond their availability *******************/
+/*************************************************************************************************/
+
+public class OverAllocations
+{
+  private HashMap<Resource, List<Conflict>> m_conflicts; // over-allocated periods of each resource
+  private HashSet<Task>                     m_tasks;     // tasks using resources in any over-allocated period
+  private int                               m_count;     // total number of over-allocated periods
+
+  private static final double               TOLERANCE = 1e-9; // usage over availability less than this is ignored
+
+  // structure describing one period when a resource is used beyond its availability
+  public static class Conflict
+  {
+    public Resource  resource;
+    public long      startMS;
+    public long      endMS;
+    public double    usage;                        // peak usage during period
+    public Set<Task> tasks = new LinkedHashSet<>(); // tasks using resource during period
+
+    private Conflict( Resource resource, long startMS )
+    {
+      this.resource = resource;
+      this.startMS = startMS;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Conflict[" + resource + ", " + usage + ", " + new DateTime( startMS ) + ", " + new DateTime( endMS )
+          + ", " + tasks.size() + " tasks]";
+    }
+  }
+
+  // fork-join task that finds the conflicts of one resource, so resources are analysed in parallel
+  private static class Analysis extends RecursiveTask<List<Conflict>>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Work        m_work;
+    private final int         m_id;
+    private final int[]       m_records;
+
+    private Analysis( Work work, int id, int[] records )
+    {
+      m_work = work;
+      m_id = id;
+      m_records = records;
+    }
+
+    @Override
+    protected List<Conflict> compute()
+    {
+      // sweep the resource usage change points once, merging consecutive periods over availability,
+      // each usage step is only split where availability changes during it (the last step is always zero)
+      Resource resource = m_work.getResource( m_id );
+      ArrayList<Conflict> conflicts = new ArrayList<>();
+      Conflict conflict = null;
+      long stepMS = Long.MIN_VALUE;
+      double usage = 0.0;
+      for ( Map.Entry<Long, Double> step : m_work.getTimeline( m_id ).getSteps().entrySet() )
+      {
+        for ( long ms = stepMS; ms < step.getKey(); ms = resource.getAvailableChange( ms ) )
+          if ( usage > resource.getAvailable( ms ) + TOLERANCE )
+          {
+            if ( conflict == null )
+            {
+              conflict = new Conflict( resource, ms );
+              conflicts.add( conflict );
+            }
+            conflict.usage = Math.max( conflict.usage, usage );
+          }
+          else if ( conflict != null )
+          {
+            conflict.endMS = ms;
+            conflict = null;
+          }
+
+        stepMS = step.getKey();
+        usage = step.getValue();
+      }
+
+      if ( conflicts.isEmpty() )
+        return conflicts;
+
+      // for each effort find first conflict ending after effort starts, then note task in overlapping conflicts
+      for ( int record : m_records )
+      {
+        long startMS = m_work.getStartMS( record );
+        long endMS = m_work.getEndMS( record );
+        int low = 0;
+        int high = conflicts.size();
+        while ( low < high )
+        {
+          int mid = ( low + high ) >>> 1;
+          if ( conflicts.get( mid ).endMS <= startMS )
+            low = mid + 1;
+          else
+            high = mid;
+        }
+
+        for ( int index = low; index < conflicts.size() && conflicts.get( index ).startMS < endMS; index++ )
+          conflicts.get( index ).tasks.add( m_work.getTask( record ) );
+      }
+
+      return conflicts;
+    }
+  }
+
+  /**************************************** constructor ******************************************/
+  OverAllocations( Work work )
+  {
+    // analyse each resource with efforts in parallel, every analysis only reads shared work data
+    int[][] records = work.getResourceRecords();
+    ArrayList<Analysis> analyses = new ArrayList<>( records.length );
+    for ( int id = 0; id < records.length; id++ )
+      analyses.add( new Analysis( work, id, records[id] ) );
+    ForkJoinTask.invokeAll( analyses );
+
+    // collect results
+    m_conflicts = new HashMap<>();
+    m_tasks = new HashSet<>();
+    for ( Analysis analysis : analyses )
+    {
+      List<Conflict> conflicts = analysis.join();
+      if ( conflicts.isEmpty() )
+        continue;
+
+      m_conflicts.put( conflicts.get( 0 ).resource, Collections.unmodifiableList( conflicts ) );
+      m_count += conflicts.size();
+      for ( Conflict conflict : conflicts )
+        m_tasks.addAll( conflict.tasks );
+    }
+  }
+
+  /**************************************** getConflicts *****************************************/
+  public List<Conflict> getConflicts( Resource resource )
+  {
+    // return over-allocated periods of specified resource in time order
+    List<Conflict> conflicts = m_conflicts.get( resource );
+    if ( conflicts == null )
+      return Collections.emptyList();
+
+    return conflicts;
+  }
+
+  /*************************************** isOverAllocated ***************************************/
+  public boolean isOverAllocated( Resource resource )
+  {
+    // return true if resource is used beyond its availability at any time
+    return m_conflicts.containsKey( resource );
+  }
+
+  /*************************************** isOverAllocated ***************************************/
+  public boolean isOverAllocated( Task task )
+  {
+    // return true if task uses a resource during any period it is over-allocated
+    return m_tasks.contains( task );
+  }
+
+  /******************************************** size *********************************************/
+  public int size()
+  {
+    // return total number of over-allocated periods across all resources
+    return m_count;
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // convert to string
+    String hash = super.toString();
+    String id = hash.substring( hash.lastIndexOf( '.' ) + 1 );
+    return id + "[" + m_count + " periods, " + m_conflicts.size() + " Resources, " + m_tasks.size() + " Tasks]";
+  }
+
+}
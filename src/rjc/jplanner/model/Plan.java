@@ -37,6 +37,7 @@ public class Plan
   private Calendar            m_calendar;               // plan's default calendar
   private String              m_datetimeFormat;         // format to display date-times
   private String              m_dateFormat;             // format to display dates
+  private boolean             m_levelling;              // true if scheduling levels resource usage
   private String              m_filename;               // filename when saved or loaded
   private String              m_fileLocation;           // file location
   private String              m_savedBy;                // who saved last
@@ -205,6 +206,12 @@ public class Plan
     return m_title;
   }
 
+  /***************************************** isLevelling *****************************************/
+  public boolean isLevelling()
+  {
+    return m_levelling;
+  }
+
   /****************************************** getNotes *******************************************/
   public String getNotes()
   {
@@ -310,15 +317,30 @@ public class Plan
   /*************************************** setDefaultStart ***************************************/
   public void setDefaultStart( DateTime start )
   {
+    // set default start, if changed every task needs rescheduling
+    if ( m_start == null || !m_start.equals( start ) )
+      tasks.markAllChanged();
     m_start = start;
   }
 
   /************************************** setDefaultCalendar *************************************/
   public void setDefaultCalendar( Calendar cal )
   {
+    // set default calendar, if changed every task needs rescheduling
+    if ( m_calendar != cal )
+      tasks.markAllChanged();
     m_calendar = cal;
   }
 
+  /**************************************** setLevelling *****************************************/
+  public void setLevelling( boolean levelling )
+  {
+    // set resource levelling, if changed every task needs rescheduling
+    if ( m_levelling != levelling )
+      tasks.markAllChanged();
+    m_levelling = levelling;
+  }
+
   /*************************************** setDateTimeFormat *************************************/
   public void setDateTimeFormat( String DTformat )
   {
@@ -354,6 +376,7 @@ public class Plan
       xsw.writeAttribute( XmlLabels.XML_CALENDAR, Integer.toString( getIndex( m_calendar ) ) );
       xsw.writeAttribute( XmlLabels.XML_DT_FORMAT, m_datetimeFormat );
       xsw.writeAttribute( XmlLabels.XML_D_FORMAT, m_dateFormat );
+      xsw.writeAttribute( XmlLabels.XML_LEVELLING, Boolean.toString( m_levelling ) );
 
       // because XMLStreamWriter doesn't encode new-lines & tabs correctly 
       xsw.writeAttribute( XmlLabels.XML_NOTES, m_notes.replaceAll( "\\n", NOTES_CR ).replaceAll( "\\t", NOTES_TAB ) );
@@ -468,6 +491,9 @@ public class Plan
         case XmlLabels.XML_CALENDAR:
           calendarId = Integer.parseInt( xsr.getAttributeValue( i ) );
           break;
+        case XmlLabels.XML_LEVELLING:
+          m_levelling = Boolean.parseBoolean( xsr.getAttributeValue( i ) );
+          break;
         case XmlLabels.XML_NOTES:
           m_notes = xsr.getAttributeValue( i ).replaceAll( NOTES_CR, "\n" ).replaceAll( NOTES_TAB, "\t" );
           break;
@@ -536,7 +562,6 @@ public class Plan
   {
     // schedule the plan!
     JPlanner.trace( "============================== SCHEDULE started ==============================" );
-    work.clear();
     tasks.schedule();
     JPlanner.trace( "============================== SCHEDULE finished ==============================" );
   }
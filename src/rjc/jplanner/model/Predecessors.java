@@ -149,16 +149,12 @@ public class Predecessors
   /************************************** hasPredecessor *****************************************/
   public boolean hasPredecessor( Task other )
   {
-    // return true if task is a predecessor
+    // return true if task is a predecessor, directly or indirectly
+    TaskGraph graph = JPlanner.plan.tasks.getGraph();
     for ( Predecessor pred : m_preds )
-    {
-      if ( pred.task == other )
+      if ( pred.task == other || graph.isUpstream( other, pred.task ) )
         return true;
 
-      if ( pred.task.hasPredecessor( other ) )
-        return true;
-    }
-
     return false;
   }
 
@@ -225,7 +221,8 @@ public class Predecessors
       }
 
       // check number is does not cause circular reference
-      if ( JPlanner.plan.getTask( taskNum ).hasPredecessor( JPlanner.plan.getTask( thisTaskNum ) ) )
+      if ( JPlanner.plan.tasks.getGraph().wouldBeCircular( JPlanner.plan.getTask( taskNum ),
+          JPlanner.plan.getTask( thisTaskNum ) ) )
       {
         error.append( '\'' ).append( taskNum ).append( "' gives a circular reference to this task.  " );
         continue;
@@ -292,9 +289,11 @@ public class Predecessors
   /****************************************** hasToStart *****************************************/
   public boolean hasToStart()
   {
-    // return true if has Finish-To-Start or Start-to-Start predecessor
+    // return true if has Finish-To-Start or Start-to-Start predecessor (null tasks are ignored)
     for ( Predecessor pred : m_preds )
     {
+      if ( pred.task.isNull() )
+        continue;
       if ( pred.type == TYPE_FINISH_START )
         return true;
       if ( pred.type == TYPE_START_START )
@@ -307,9 +306,11 @@ public class Predecessors
   /****************************************** hasToFinish ****************************************/
   public boolean hasToFinish()
   {
-    // return true if has Finish-To-Finish or Start-to-Finish predecessor
+    // return true if has Finish-To-Finish or Start-to-Finish predecessor (null tasks are ignored)
     for ( Predecessor pred : m_preds )
     {
+      if ( pred.task.isNull() )
+        continue;
       if ( pred.type == TYPE_FINISH_FINISH )
         return true;
       if ( pred.type == TYPE_START_FINISH )
@@ -319,25 +320,28 @@ public class Predecessors
     return false;
   }
 
-  /****************************************** getStart *******************************************/
-  public DateTime getStart()
+  /***************************************** getStartMS ******************************************/
+  public long getStartMS( Scheduling run )
   {
-    // return task start based on predecessors
+    // return task start based on predecessors dates in scheduling run as epoch-milliseconds, ignoring null tasks
     Calendar cal = JPlanner.plan.getDefaultCalendar();
-    DateTime start = DateTime.MIN_VALUE;
+    long start = DateTime.MIN_VALUE.getMilliseconds();
     for ( Predecessor pred : m_preds )
     {
+      if ( pred.task.isNull() )
+        continue;
+
       if ( pred.type == TYPE_FINISH_START )
       {
-        DateTime check = cal.workTimeSpan( pred.task.getEnd(), pred.lag );
-        if ( check.getMilliseconds() > start.getMilliseconds() )
+        long check = cal.workTimeSpanMS( run.getEnd( pred.task ).getMilliseconds(), pred.lag );
+        if ( check > start )
           start = check;
       }
 
       if ( pred.type == TYPE_START_START )
       {
-        DateTime check = cal.workTimeSpan( pred.task.getStart(), pred.lag );
-        if ( check.getMilliseconds() > start.getMilliseconds() )
+        long check = cal.workTimeSpanMS( run.getStart( pred.task ).getMilliseconds(), pred.lag );
+        if ( check > start )
           start = check;
       }
     }
@@ -345,25 +349,28 @@ public class Predecessors
     return start;
   }
 
-  /******************************************* getEnd ********************************************/
-  public DateTime getEnd()
+  /****************************************** getEndMS *******************************************/
+  public long getEndMS( Scheduling run )
   {
-    // return task end based on predecessors
+    // return task end based on predecessors dates in scheduling run as epoch-milliseconds, ignoring null tasks
     Calendar cal = JPlanner.plan.getDefaultCalendar();
-    DateTime end = DateTime.MAX_VALUE;
+    long end = DateTime.MAX_VALUE.getMilliseconds();
     for ( Predecessor pred : m_preds )
     {
+      if ( pred.task.isNull() )
+        continue;
+
       if ( pred.type == TYPE_FINISH_FINISH )
       {
-        DateTime check = cal.workTimeSpan( pred.task.getEnd(), pred.lag );
-        if ( check.getMilliseconds() < end.getMilliseconds() )
+        long check = cal.workTimeSpanMS( run.getEnd( pred.task ).getMilliseconds(), pred.lag );
+        if ( check < end )
           end = check;
       }
 
       if ( pred.type == TYPE_START_FINISH )
       {
-        DateTime check = cal.workTimeSpan( pred.task.getStart(), pred.lag );
-        if ( check.getMilliseconds() < end.getMilliseconds() )
+        long check = cal.workTimeSpanMS( run.getStart( pred.task ).getMilliseconds(), pred.lag );
+        if ( check < end )
           end = check;
       }
     }
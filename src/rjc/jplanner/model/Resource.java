@@ -39,10 +39,11 @@ public class Resource
   private String          m_alias;              // free text
   private Date            m_start;              // date availability starts inclusive
   private Date            m_end;                // date availability end inclusive
-  private double          m_availability;       // number available
+  private Availability    m_availability;       // number available over time
   private double          m_cost;               // cost TODO
   private Calendar        m_calendar;           // calendar for resource
   private String          m_comment;            // free text
+  private int             m_index;              // position in plan resource list, maintained by list
 
   public static final int SECTION_INITIALS = 0;
   public static final int SECTION_NAME     = 1;
@@ -62,7 +63,7 @@ public class Resource
   public Resource()
   {
     // initialise private variables
-    m_availability = 1.0;
+    m_availability = new Availability( 1.0 );
   }
 
   /**************************************** constructor ******************************************/
@@ -100,7 +101,7 @@ public class Resource
           m_end = Date.fromString( xsr.getAttributeValue( i ) );
           break;
         case XmlLabels.XML_AVAIL:
-          m_availability = Double.parseDouble( xsr.getAttributeValue( i ) );
+          m_availability = new Availability( xsr.getAttributeValue( i ) );
           break;
         case XmlLabels.XML_COST:
           m_cost = Double.parseDouble( xsr.getAttributeValue( i ) );
@@ -183,6 +184,11 @@ public class Resource
   /****************************************** setValue ******************************************/
   public void setValue( int section, Object newValue )
   {
+    // if a tag is changing, remove this resource's tags from plan tag index until updated
+    boolean tagChange = section <= SECTION_ALIAS;
+    if ( tagChange )
+      JPlanner.plan.resources.removeTags( this );
+
     // update resource with new value
     if ( section == SECTION_INITIALS )
     {
@@ -220,12 +226,20 @@ public class Resource
       m_end = (Date) newValue;
 
     else if ( section == SECTION_AVAIL )
-      m_availability = (double) newValue;
+      m_availability = (Availability) newValue;
 
     // TODO !!!!!!!!!!!!!!!!!!!!!!!!!! m_cost
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // add this resource's tags back into plan tag index
+    if ( tagChange )
+      JPlanner.plan.resources.addTags( this );
+
+    // resource changes may affect any task using resources
+    if ( section != SECTION_COMMENT )
+      JPlanner.plan.tasks.markAllChanged();
   }
 
   /****************************************** isNull *********************************************/
@@ -302,7 +316,7 @@ public class Resource
         xsw.writeAttribute( XmlLabels.XML_START, m_start.toString() );
       if ( m_end != null )
         xsw.writeAttribute( XmlLabels.XML_END, m_end.toString() );
-      xsw.writeAttribute( XmlLabels.XML_AVAIL, Double.toString( m_availability ) );
+      xsw.writeAttribute( XmlLabels.XML_AVAIL, m_availability.toString() );
       xsw.writeAttribute( XmlLabels.XML_COST, Double.toString( m_cost ) );
       xsw.writeAttribute( XmlLabels.XML_CALENDAR, Integer.toString( m_calendar.getIndex() ) );
       if ( m_comment != null )
@@ -316,6 +330,38 @@ public class Resource
     return JPlanner.plan.getIndex( this );
   }
 
+  /**************************************** getListIndex *****************************************/
+  int getListIndex()
+  {
+    // return position last recorded by list, not necessarily still valid
+    return m_index;
+  }
+
+  /**************************************** setListIndex *****************************************/
+  void setListIndex( int index )
+  {
+    // record position in list
+    m_index = index;
+  }
+
+  /***************************************** getStartMS ******************************************/
+  private long getStartMS()
+  {
+    // return epoch-milliseconds when this resource starts being available
+    if ( m_start == null )
+      return DateTime.MIN_VALUE.getMilliseconds();
+    return m_start.getEpochday() * DateTime.MILLISECONDS_IN_DAY;
+  }
+
+  /****************************************** getEndMS *******************************************/
+  private long getEndMS()
+  {
+    // return epoch-milliseconds when this resource stops being available
+    if ( m_end == null )
+      return DateTime.MAX_VALUE.getMilliseconds();
+    return ( m_end.getEpochday() + 1L ) * DateTime.MILLISECONDS_IN_DAY;
+  }
+
   /****************************************** getStart *******************************************/
   public DateTime getStart()
   {
@@ -344,26 +390,68 @@ public class Resource
   /**************************************** getAvailable *****************************************/
   public double getAvailable()
   {
-    // return the number of these resource's available
-    return m_availability;
+    // return the maximum number of this resource available at any time
+    return m_availability.getMaximum();
   }
 
   /**************************************** getAvailable *****************************************/
-  public double getAvailable( Date date )
+  public double getAvailable( long ms )
   {
-    // return the number of these resource's available at specified date-time
-    int dateEpoch = date.getEpochday();
-    if ( dateEpoch < m_start.getEpochday() || dateEpoch > m_end.getEpochday() )
+    // return the number of this resource available at specified epoch-milliseconds
+    if ( ms < getStartMS() || ms >= getEndMS() )
       return 0.0;
 
-    return m_availability;
+    return m_availability.getNumber( ms );
+  }
+
+  /**************************************** getAvailable *****************************************/
+  public double getAvailable( Date date )
+  {
+    // return the number of this resource available at start of specified date
+    return getAvailable( date.getEpochday() * DateTime.MILLISECONDS_IN_DAY );
   }
 
   /**************************************** getAvailable *****************************************/
   public double getAvailable( DateTime dt )
   {
-    // return the number of these resource's available at specified date-time
-    return getAvailable( dt.getDate() );
+    // return the number of this resource available at specified date-time
+    return getAvailable( dt.getMilliseconds() );
+  }
+
+  /************************************** getAvailableChange *************************************/
+  public long getAvailableChange( long ms )
+  {
+    // return milliseconds when availability next changes after specified milliseconds, or Long.MAX_VALUE if never
+    long start = getStartMS();
+    if ( ms < start )
+      return start;
+
+    long end = getEndMS();
+    return ms < end ? Math.min( m_availability.getNextChange( ms ), end ) : Long.MAX_VALUE;
+  }
+
+  /************************************* getAvailablePrevious ************************************/
+  public long getAvailablePrevious( long ms )
+  {
+    // return milliseconds when availability last changed before specified milliseconds, or Long.MIN_VALUE if never
+    long end = getEndMS();
+    if ( ms > end )
+      return end;
+
+    long start = getStartMS();
+    return ms > start ? Math.max( m_availability.getPreviousChange( ms ), start ) : Long.MIN_VALUE;
+  }
+
+  /************************************* getAvailableIntegral ************************************/
+  public double getAvailableIntegral( long startMS, long endMS )
+  {
+    // return number-milliseconds of this resource available between start and end
+    startMS = Math.max( startMS, getStartMS() );
+    endMS = Math.min( endMS, getEndMS() );
+    if ( endMS <= startMS )
+      return 0.0;
+
+    return m_availability.getIntegral( startMS, endMS );
   }
 
   /***************************************** getInitials *****************************************/
@@ -384,6 +472,16 @@ public class Resource
     return false;
   }
 
+  /******************************************* getTags *******************************************/
+  public String[] getTags()
+  {
+    // return the fields that can be used as tags, none if resource is null
+    if ( isNull() )
+      return new String[0];
+
+    return new String[] { m_initials, m_name, m_org, m_group, m_role, m_alias };
+  }
+
   /***************************************** getTagCount *****************************************/
   public int getTagCount( String tag )
   {
@@ -19,6 +19,9 @@
 package rjc.jplanner.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -31,9 +34,29 @@ import rjc.jplanner.XmlLabels;
 /************************** Holds the complete list of plan resources ****************************/
 /*************************************************************************************************/
 
-public class Resources extends ArrayList<Resource>
+public class Resources extends IndexedList<Resource>
 {
-  private static final long serialVersionUID = 1L;
+  private static final long             serialVersionUID = 1L;
+
+  private HashMap<String, TagUse>       m_tags;          // resources and use count for each tag, null if to be rebuilt
+  private HashMap<String, Integer>      m_tagIds;        // id for each tag assigned to tasks in this plan
+  private ArrayList<String>             m_tagNames;      // tag assigned to tasks for each id
+  private volatile List<List<Resource>> m_tagResources;  // resources with tag for each id, or null
+
+  // structure that contains the resources with one tag
+  class TagUse
+  {
+    public List<Resource> resources = Collections.emptyList(); // immutable, in plan order
+    public int            count;                               // number of resource fields with the tag
+  }
+
+  /**************************************** constructor ******************************************/
+  public Resources()
+  {
+    // tags assigned to tasks are given ids by the plan's resources, so are dropped with the plan
+    m_tagIds = new HashMap<>();
+    m_tagNames = new ArrayList<>();
+  }
 
   /**************************************** initialise *******************************************/
   public void initialise()
@@ -98,11 +121,7 @@ public class Resources extends ArrayList<Resource>
       throw new NullPointerException( "Tag is null!" );
 
     // return true only if any tag is used by a resource
-    for ( Resource resource : this )
-      if ( resource.hasTag( tag ) )
-        return true;
-
-    return false;
+    return getTagIndex().containsKey( tag );
   }
 
   /***************************************** isTagUnique *****************************************/
@@ -113,38 +132,157 @@ public class Resources extends ArrayList<Resource>
       throw new NullPointerException( "Tag is null!" );
 
     // return true if tag used only once or less
-    int count = 0;
-    for ( Resource resource : this )
-    {
-      count += resource.getTagCount( tag );
-      if ( count > 1 )
-        return false;
-    }
-
-    return true;
+    return tagCount( tag ) <= 1;
   }
 
   /****************************************** tagCount *******************************************/
   public int tagCount( String tag )
   {
     // return count of tag defines
-    int count = 0;
-    for ( Resource resource : this )
-      count += resource.getTagCount( tag );
-
-    return count;
+    TagUse use = getTagIndex().get( tag );
+    return use == null ? 0 : use.count;
   }
 
   /*************************************** getResourceList ***************************************/
-  public ArrayList<Resource> getResourceList( String tag )
+  public List<Resource> getResourceList( String tag )
   {
-    // return list of resources that have this tag
-    ArrayList<Resource> list = new ArrayList<Resource>();
-    for ( Resource resource : this )
-      if ( resource.hasTag( tag ) )
-        list.add( resource );
+    // return unmodifiable list of resources that have this tag
+    TagUse use = getTagIndex().get( tag );
+    return use == null ? Collections.emptyList() : use.resources;
+  }
+
+  /**************************************** prepareIndex *****************************************/
+  void prepareIndex()
+  {
+    // build tag index and resources for each assigned tag id now, so threads sharing resources
+    // afterwards only read them
+    getTagIndex();
+    getTagResources( 0 );
+  }
+
+  /****************************************** getTagId *******************************************/
+  int getTagId( String tag )
+  {
+    // return id for tag assigned to task, allocating next id if tag not assigned before, in which
+    // case its resources are resolved with the others when next prepared
+    Integer id = m_tagIds.get( tag );
+    if ( id == null )
+    {
+      id = m_tagNames.size();
+      m_tagIds.put( tag, id );
+      m_tagNames.add( tag );
+      m_tagResources = null;
+    }
+
+    return id;
+  }
+
+  /*************************************** getTagIdIfUsed ****************************************/
+  Integer getTagIdIfUsed( String tag )
+  {
+    // return id for tag assigned to task, or null if tag never assigned
+    return m_tagIds.get( tag );
+  }
+
+  /******************************************* getTag ********************************************/
+  String getTag( int id )
+  {
+    // return tag for id
+    return m_tagNames.get( id );
+  }
+
+  /*************************************** getTagResources ***************************************/
+  List<Resource> getTagResources( int id )
+  {
+    // return resources with tag for id, resolving every assigned tag if not done since tags changed
+    List<List<Resource>> tagResources = m_tagResources;
+    if ( tagResources == null || id >= tagResources.size() )
+    {
+      Scheduling.checkPrepared( this );
+      ArrayList<List<Resource>> list = new ArrayList<>( m_tagNames.size() );
+      for ( String tag : m_tagNames )
+        list.add( getResourceList( tag ) );
+      tagResources = list;
+      m_tagResources = list;
+    }
 
-    return list;
+    return id < tagResources.size() ? tagResources.get( id ) : Collections.emptyList();
+  }
+
+  /***************************************** getTagIndex *****************************************/
+  private HashMap<String, TagUse> getTagIndex()
+  {
+    // return index from tag to resources using it, rebuilding if needed
+    if ( m_tags == null )
+    {
+      // a scheduling run only reads the index built when prepared, as resources are shared between threads
+      Scheduling.checkPrepared( this );
+      m_tags = new HashMap<>();
+      for ( Resource resource : this )
+        addTags( resource );
+    }
+
+    return m_tags;
+  }
+
+  /******************************************* addTags *******************************************/
+  void addTags( Resource resource )
+  {
+    // add resource's tags to index, keeping each tag's resources in plan order
+    m_tagResources = null;
+    if ( m_tags == null || indexOf( resource ) < 0 )
+      return;
+
+    for ( String tag : resource.getTags() )
+    {
+      if ( tag == null )
+        continue;
+
+      TagUse use = m_tags.get( tag );
+      if ( use == null )
+      {
+        use = new TagUse();
+        m_tags.put( tag, use );
+      }
+      use.count++;
+
+      if ( !use.resources.contains( resource ) )
+      {
+        int pos = 0;
+        int index = resource.getListIndex();
+        while ( pos < use.resources.size() && use.resources.get( pos ).getListIndex() < index )
+          pos++;
+
+        ArrayList<Resource> list = new ArrayList<>( use.resources );
+        list.add( pos, resource );
+        use.resources = Collections.unmodifiableList( list );
+      }
+    }
+  }
+
+  /***************************************** removeTags ******************************************/
+  void removeTags( Resource resource )
+  {
+    // remove resource's tags from index
+    m_tagResources = null;
+    if ( m_tags == null || indexOf( resource ) < 0 )
+      return;
+
+    for ( String tag : resource.getTags() )
+    {
+      TagUse use = tag == null ? null : m_tags.get( tag );
+      if ( use == null )
+        continue;
+
+      if ( --use.count <= 0 )
+        m_tags.remove( tag );
+      else if ( use.resources.contains( resource ) )
+      {
+        ArrayList<Resource> list = new ArrayList<>( use.resources );
+        list.remove( resource );
+        use.resources = Collections.unmodifiableList( list );
+      }
+    }
   }
 
   /**************************************** initialsClash ****************************************/
@@ -177,4 +315,22 @@ public class Resources extends ArrayList<Resource>
     return null;
   }
 
+  /****************************************** readIndex ******************************************/
+  @Override
+  protected int readIndex( Object item )
+  {
+    // return position held by item
+    return item instanceof Resource ? ( (Resource) item ).getListIndex() : -1;
+  }
+
+  /***************************************** writeIndex ******************************************/
+  @Override
+  protected void writeIndex( Resource resource, int index )
+  {
+    // record position in item, and as tag index holds resources in plan order it must be rebuilt
+    resource.setListIndex( index );
+    m_tags = null;
+    m_tagResources = null;
+  }
+
 }
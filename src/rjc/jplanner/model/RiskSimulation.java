@@ -0,0 +1,549 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import rjc.jplanner.JPlanner;
+
+/*************************************************************************************************/
+/****************** Monte Carlo simulation of plan end using task duration estimates *************/
+/*************************************************************************************************/
+
+public class RiskSimulation
+{
+  // the snapshot holds everything a simulated schedule pass needs in final primitive arrays, with
+  // dates as work days on the plan default calendar after the earliest task start, so passes only
+  // read shared data and can run in parallel without touching the plan or its calendars
+  private final Task[]        m_tasks;     // tasks in snapshot, to look up results by task
+  private final long          m_originMS;  // epoch-milliseconds of work day zero
+  private final Calendar      m_calendar;  // plan default calendar, only used to convert results
+  private final int[]         m_nodes;     // task exit and summary entry nodes in topological order
+  private final int[]         m_parent;    // summary of each task, or -1
+  private final boolean[]     m_active;    // true if task scheduled so included in passes
+  private final boolean[]     m_summary;   // true if task is summary
+  private final double[]      m_fixed;     // start of tasks that ignore predecessors, otherwise NaN
+  private final byte[]        m_mode;      // whether task start or end is set by predecessors, or neither
+  private final double        m_default;   // plan default start
+  private final double[]      m_low;       // optimistic duration of each task
+  private final double[]      m_likely;    // most likely duration of each task
+  private final double[]      m_high;      // pessimistic duration of each task
+
+  private final int[]         m_inFirst;   // first incoming link of each task, links grouped by successor
+  private final int[]         m_inTask;    // predecessor of each incoming link
+  private final byte[]        m_inType;    // type of each incoming link
+  private final double[]      m_inLag;     // lag of each incoming link
+  private final int[]         m_outFirst;  // first outgoing link of each task, links grouped by predecessor
+  private final int[]         m_outTask;   // successor of each outgoing link
+  private final byte[]        m_outType;   // type of each outgoing link
+  private final double[]      m_outLag;    // lag of each outgoing link
+
+  private static final int    BATCH     = 256;  // passes per fork-join leaf
+  private static final double TOLERANCE = 1e-6; // float less than this is considered zero
+
+  private static final byte   FS        = 0;
+  private static final byte   SS        = 1;
+  private static final byte   SF        = 2;
+  private static final byte   FF        = 3;
+
+  private static final byte   DEFAULT   = 0; // task starts at plan default start
+  private static final byte   START     = 1; // task start set by predecessors, finish links ignored
+  private static final byte   FINISH    = 2; // task end set by predecessors
+
+  // results of a simulation
+  public class Result
+  {
+    private double[] m_ends;     // plan end of each pass in ascending order
+    private int[]    m_critical; // number of passes each task was critical
+
+    private Result( double[] ends, int[] critical )
+    {
+      m_ends = ends;
+      m_critical = critical;
+      Arrays.sort( m_ends );
+    }
+
+    public int getPasses()
+    {
+      // return number of simulated schedule passes
+      return m_ends.length;
+    }
+
+    public DateTime getEnd( double percentile )
+    {
+      // return plan end not exceeded by specified percentage of passes
+      int index = (int) Math.ceil( percentile / 100.0 * m_ends.length ) - 1;
+      double end = m_ends[Math.max( 0, Math.min( m_ends.length - 1, index ) )];
+      return new DateTime( m_calendar.workTimeSpanMS( m_originMS, end, TimeSpan.UNIT_DAYS ) );
+    }
+
+    public double getCriticality( Task task )
+    {
+      // return fraction of passes in which task was critical, or NaN if task not simulated
+      int index = task.getIndex();
+      if ( index < 0 || index >= m_tasks.length || m_tasks[index] != task || !m_active[index] )
+        return Double.NaN;
+
+      return m_critical[index] / (double) m_ends.length;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Result[" + m_ends.length + " passes, P50=" + getEnd( 50.0 ) + ", P90=" + getEnd( 90.0 ) + "]";
+    }
+  }
+
+  // fork-join task that simulates a range of passes, splitting until small enough to run directly
+  private class Batch extends RecursiveTask<int[]>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final double[]    m_ends;
+    private final int         m_from;
+    private final int         m_to;
+    private final long        m_seed;
+
+    private Batch( double[] ends, int from, int to, long seed )
+    {
+      m_ends = ends;
+      m_from = from;
+      m_to = to;
+      m_seed = seed;
+    }
+
+    @Override
+    protected int[] compute()
+    {
+      // split on fixed boundaries so each pass uses the same random numbers whatever the core count
+      if ( m_to - m_from > BATCH )
+      {
+        int mid = m_from + Math.max( 1, ( m_to - m_from ) / BATCH / 2 ) * BATCH;
+        Batch low = new Batch( m_ends, m_from, mid, m_seed );
+        Batch high = new Batch( m_ends, mid, m_to, m_seed );
+        invokeAll( low, high );
+
+        int[] critical = low.join();
+        int[] other = high.join();
+        for ( int index = 0; index < critical.length; index++ )
+          critical[index] += other[index];
+        return critical;
+      }
+
+      // working arrays allocated once per batch and reused for every pass
+      int size = m_tasks.length;
+      Pass pass = new Pass( size );
+      SplittableRandom random = new SplittableRandom( m_seed + m_from );
+      for ( int index = m_from; index < m_to; index++ )
+        m_ends[index] = pass.run( random );
+
+      return pass.critical;
+    }
+  }
+
+  // working arrays for simulated schedule passes
+  private class Pass
+  {
+    private double[] es;       // early start
+    private double[] ef;       // early finish
+    private double[] ls;       // late start
+    private double[] lf;       // late finish
+    private double[] entry;    // start of sub-tasks due to summary predecessors
+    private double[] exit;     // end of sub-tasks due to summary predecessors
+    private int[]    critical; // number of passes each task was critical
+
+    private Pass( int size )
+    {
+      es = new double[size];
+      ef = new double[size];
+      ls = new double[size];
+      lf = new double[size];
+      entry = new double[size];
+      exit = new double[size];
+      critical = new int[size];
+    }
+
+    private double run( SplittableRandom random )
+    {
+      // forward pass in topological order matching how tasks are scheduled, summary entry nodes pass
+      // on predecessor constraints to sub-tasks, and task exit nodes roll up dates to their summaries
+      int size = m_tasks.length;
+      double planEnd = Double.NEGATIVE_INFINITY;
+      for ( int node : m_nodes )
+      {
+        int index = node >= size ? node - size : node;
+        if ( !m_active[index] )
+          continue;
+
+        int parent = m_parent[index];
+        if ( node >= size )
+        {
+          entry[index] = startDue( index, parent );
+          exit[index] = endDue( index, parent );
+          es[index] = Double.POSITIVE_INFINITY;
+          ef[index] = Double.NEGATIVE_INFINITY;
+          continue;
+        }
+
+        if ( !m_summary[index] )
+        {
+          double duration = sample( random, index );
+          if ( !Double.isNaN( m_fixed[index] ) )
+            es[index] = m_fixed[index];
+          else if ( m_mode[index] == START )
+            es[index] = startDue( index, parent );
+          else if ( m_mode[index] == FINISH )
+            es[index] = endDue( index, parent ) - duration;
+          else
+            es[index] = m_default;
+          ef[index] = es[index] + duration;
+          planEnd = Math.max( planEnd, ef[index] );
+        }
+        else if ( es[index] == Double.POSITIVE_INFINITY )
+        {
+          es[index] = Math.max( m_default, entry[index] );
+          ef[index] = es[index];
+        }
+
+        if ( parent >= 0 )
+        {
+          es[parent] = Math.min( es[parent], es[index] );
+          ef[parent] = Math.max( ef[parent], ef[index] );
+        }
+      }
+
+      // backward pass in reverse topological order, as for critical path analysis
+      for ( int n = m_nodes.length - 1; n >= 0; n-- )
+      {
+        int node = m_nodes[n];
+        int index = node >= size ? node - size : node;
+        if ( !m_active[index] )
+          continue;
+
+        int parent = m_parent[index];
+        if ( node >= size )
+        {
+          if ( ls[index] == Double.POSITIVE_INFINITY )
+            ls[index] = lf[index] - ( ef[index] - es[index] );
+          if ( parent >= 0 && ls[index] < ls[parent] )
+            ls[parent] = ls[index];
+          continue;
+        }
+
+        double duration = ef[index] - es[index];
+        double late = parent < 0 ? planEnd : Math.min( planEnd, lf[parent] );
+        for ( int l = m_outFirst[index]; l < m_outFirst[index + 1]; l++ )
+        {
+          int succ = m_outTask[l];
+          switch ( m_outType[l] )
+          {
+            case FS:
+              late = Math.min( late, ls[succ] - m_outLag[l] );
+              break;
+            case SS:
+              late = Math.min( late, ls[succ] - m_outLag[l] + duration );
+              break;
+            case SF:
+              late = Math.min( late, lf[succ] - m_outLag[l] + duration );
+              break;
+            default:
+              late = Math.min( late, lf[succ] - m_outLag[l] );
+              break;
+          }
+        }
+
+        lf[index] = late;
+        if ( late - ef[index] < TOLERANCE )
+          critical[index]++;
+
+        if ( m_summary[index] )
+          ls[index] = Double.POSITIVE_INFINITY;
+        else
+        {
+          ls[index] = late - duration;
+          if ( parent >= 0 && ls[index] < ls[parent] )
+            ls[parent] = ls[index];
+        }
+      }
+
+      return planEnd;
+    }
+
+    private double startDue( int index, int parent )
+    {
+      // return latest start due to start links of task and its summaries
+      double start = parent < 0 ? Double.NEGATIVE_INFINITY : entry[parent];
+      for ( int l = m_inFirst[index]; l < m_inFirst[index + 1]; l++ )
+        if ( m_inType[l] == FS )
+          start = Math.max( start, ef[m_inTask[l]] + m_inLag[l] );
+        else if ( m_inType[l] == SS )
+          start = Math.max( start, es[m_inTask[l]] + m_inLag[l] );
+
+      return start;
+    }
+
+    private double endDue( int index, int parent )
+    {
+      // return earliest end due to finish links of task and its summaries
+      double end = parent < 0 ? Double.POSITIVE_INFINITY : exit[parent];
+      for ( int l = m_inFirst[index]; l < m_inFirst[index + 1]; l++ )
+        if ( m_inType[l] == FF )
+          end = Math.min( end, ef[m_inTask[l]] + m_inLag[l] );
+        else if ( m_inType[l] == SF )
+          end = Math.min( end, es[m_inTask[l]] + m_inLag[l] );
+
+      return end;
+    }
+  }
+
+  /**************************************** constructor ******************************************/
+  public RiskSimulation( Tasks tasks, Calendar calendar )
+  {
+    // take snapshot of tasks, first finding earliest start to measure from
+    int size = tasks.size();
+    m_tasks = tasks.toArray( new Task[size] );
+    m_calendar = calendar;
+    m_active = new boolean[size];
+    long originMS = Long.MAX_VALUE;
+    for ( int index = 0; index < size; index++ )
+    {
+      Task task = m_tasks[index];
+      m_active[index] = !task.isNull() && task.getStart() != null && task.getEnd() != null;
+      if ( m_active[index] )
+        originMS = Math.min( originMS, task.getStart().getMilliseconds() );
+    }
+    m_originMS = originMS == Long.MAX_VALUE ? 0L : originMS;
+    m_default = days( JPlanner.plan.getDefaultStart().getMilliseconds() );
+    m_nodes = tasks.getGraph().getNodeOrder();
+
+    // task summaries, types and durations
+    m_parent = new int[size];
+    m_summary = new boolean[size];
+    m_fixed = new double[size];
+    m_mode = new byte[size];
+    m_low = new double[size];
+    m_likely = new double[size];
+    m_high = new double[size];
+    for ( int index = 0; index < size; index++ )
+    {
+      m_parent[index] = -1;
+      m_fixed[index] = Double.NaN;
+      if ( !m_active[index] )
+        continue;
+
+      Task task = m_tasks[index];
+      int parent = task.getSummaryStart();
+      if ( parent != index && parent >= 0 && parent < size && m_active[parent] )
+        m_parent[index] = parent;
+      m_summary[index] = task.isSummary();
+
+      // like scheduling, a task without predecessors takes start or end from its nearest summary with
+      // predecessors, which as summaries precede their sub-tasks has already been determined
+      m_mode[index] = mode( index );
+      if ( m_mode[index] == DEFAULT && m_parent[index] >= 0 )
+        m_mode[index] = m_mode[m_parent[index]];
+      if ( m_summary[index] )
+        continue;
+
+      // tasks that are not 'as soon as possible' keep their start, fixed period tasks their end too
+      long startMS = task.getStart().getMilliseconds();
+      TaskType type = task.type();
+      if ( type != TaskType.ASAP_FDUR && type != TaskType.ASAP_FWORK )
+        m_fixed[index] = days( startMS );
+
+      Estimate estimate = task.getEstimate();
+      if ( estimate == null || type == TaskType.FIXED_PERIOD )
+      {
+        m_low[index] = days( task.getEnd().getMilliseconds() ) - days( startMS );
+        m_likely[index] = m_low[index];
+        m_high[index] = m_low[index];
+      }
+      else
+      {
+        m_low[index] = duration( startMS, estimate.getOptimistic() );
+        m_likely[index] = duration( startMS, estimate.getLikely() );
+        m_high[index] = duration( startMS, estimate.getPessimistic() );
+      }
+    }
+
+    // links used in scheduling, grouped by successor for forward passes and by predecessor for backward
+    m_inFirst = new int[size + 1];
+    m_outFirst = new int[size + 1];
+    for ( int index = 0; index < size; index++ )
+      if ( m_active[index] && Double.isNaN( m_fixed[index] ) )
+        for ( int p = 0; p < m_tasks[index].getPredecessors().getCount(); p++ )
+        {
+          int pred = predecessor( index, p );
+          if ( pred >= 0 && isUsed( index, p ) )
+          {
+            m_inFirst[index + 1]++;
+            m_outFirst[pred + 1]++;
+          }
+        }
+    for ( int index = 0; index < size; index++ )
+    {
+      m_inFirst[index + 1] += m_inFirst[index];
+      m_outFirst[index + 1] += m_outFirst[index];
+    }
+
+    int links = m_inFirst[size];
+    m_inTask = new int[links];
+    m_inType = new byte[links];
+    m_inLag = new double[links];
+    m_outTask = new int[links];
+    m_outType = new byte[links];
+    m_outLag = new double[links];
+    int[] next = Arrays.copyOf( m_outFirst, size );
+    int in = 0;
+    for ( int index = 0; index < size; index++ )
+      if ( m_active[index] && Double.isNaN( m_fixed[index] ) )
+        for ( int p = 0; p < m_tasks[index].getPredecessors().getCount(); p++ )
+        {
+          int pred = predecessor( index, p );
+          if ( pred < 0 || !isUsed( index, p ) )
+            continue;
+
+          // lag converted to work days from where it applies in the current schedule
+          Predecessors.Predecessor link = m_tasks[index].getPredecessors().get( p );
+          byte type = type( link.type );
+          double lag = 0.0;
+          if ( link.lag.getNumber() != 0.0 )
+          {
+            long anchorMS = type == FS || type == FF ? m_tasks[pred].getEnd().getMilliseconds()
+                : m_tasks[pred].getStart().getMilliseconds();
+            lag = days( calendar.workTimeSpanMS( anchorMS, link.lag ) ) - days( anchorMS );
+          }
+
+          m_inTask[in] = pred;
+          m_inType[in] = type;
+          m_inLag[in++] = lag;
+
+          int out = next[pred]++;
+          m_outTask[out] = index;
+          m_outType[out] = type;
+          m_outLag[out] = lag;
+        }
+  }
+
+  /******************************************** days *********************************************/
+  private double days( long ms )
+  {
+    // return work days from origin to specified epoch-milliseconds
+    return m_calendar.workBetweenMS( m_originMS, ms );
+  }
+
+  /****************************************** duration *******************************************/
+  private double duration( long startMS, TimeSpan span )
+  {
+    // return work days of time-span from specified start
+    return days( m_calendar.workTimeSpanMS( startMS, span ) ) - days( startMS );
+  }
+
+  /***************************************** predecessor *****************************************/
+  private int predecessor( int index, int p )
+  {
+    // return index of task's predecessor which is included in passes, otherwise -1
+    Task pred = m_tasks[index].getPredecessors().get( p ).task;
+    if ( pred == null || pred == m_tasks[index] )
+      return -1;
+
+    int found = pred.getIndex();
+    return found >= 0 && found < m_tasks.length && m_tasks[found] == pred && m_active[found] ? found : -1;
+  }
+
+  /******************************************** mode *********************************************/
+  private byte mode( int index )
+  {
+    // return START if task has start predecessors, otherwise FINISH if finish predecessors, as scheduling
+    byte mode = DEFAULT;
+    for ( int p = 0; p < m_tasks[index].getPredecessors().getCount(); p++ )
+      if ( predecessor( index, p ) >= 0 )
+      {
+        byte type = type( m_tasks[index].getPredecessors().get( p ).type );
+        if ( type == FS || type == SS )
+          return START;
+        mode = FINISH;
+      }
+
+    return mode;
+  }
+
+  /******************************************* isUsed ********************************************/
+  private boolean isUsed( int index, int p )
+  {
+    // return true if predecessor link affects task, finish links are ignored when task has start links
+    if ( m_summary[index] )
+      return true;
+
+    byte type = type( m_tasks[index].getPredecessors().get( p ).type );
+    return ( m_mode[index] == START ) == ( type == FS || type == SS );
+  }
+
+  /******************************************** type *********************************************/
+  private static byte type( String type )
+  {
+    // return link type code for predecessor type
+    if ( Predecessors.TYPE_START_START.equals( type ) )
+      return SS;
+    if ( Predecessors.TYPE_START_FINISH.equals( type ) )
+      return SF;
+    if ( Predecessors.TYPE_FINISH_FINISH.equals( type ) )
+      return FF;
+    return FS;
+  }
+
+  /******************************************* sample ********************************************/
+  private double sample( SplittableRandom random, int index )
+  {
+    // return duration sampled from triangular distribution of task's estimate
+    double low = m_low[index];
+    double high = m_high[index];
+    if ( high <= low )
+      return low;
+
+    double mode = m_likely[index];
+    double u = random.nextDouble();
+    if ( u < ( mode - low ) / ( high - low ) )
+      return low + Math.sqrt( u * ( high - low ) * ( mode - low ) );
+    return high - Math.sqrt( ( 1.0 - u ) * ( high - low ) * ( high - mode ) );
+  }
+
+  /********************************************* run *********************************************/
+  public Result run( int passes, long seed )
+  {
+    // simulate specified number of schedule passes in parallel, results depend only on seed
+    double[] ends = new double[passes];
+    int[] critical = ForkJoinPool.commonPool().invoke( new Batch( ends, 0, passes, seed ) );
+    return new Result( ends, critical );
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // convert to string
+    String hash = super.toString();
+    String id = hash.substring( hash.lastIndexOf( '.' ) + 1 );
+    return id + "[" + m_tasks.length + " Tasks, " + m_inTask.length + " links]";
+  }
+
+}
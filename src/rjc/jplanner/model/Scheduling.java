@@ -0,0 +1,402 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rjc.jplanner.JPlanner;
+
+/*************************************************************************************************/
+/************ One run of the scheduler, which may be on a worker thread and cancelled ************/
+/*************************************************************************************************/
+
+public class Scheduling
+{
+  // prepared and published by the thread that changes the plan, a run only reads the plan and writes
+  // dates and gantt data to its own arrays and efforts to its own work, so tasks are only changed when
+  // published, and a run cancelled before the plan is changed can be forgotten without waiting for it
+  private int[]                                m_order;     // scheduling order of all tasks
+  private Task[]                               m_tasks;     // tasks to be scheduled in scheduling order
+  private Work                                 m_work;      // work efforts are added to, becoming plan work
+  private Set<Task>                            m_cleared;   // tasks with efforts to clear from copy of work, or null
+  private boolean                              m_all;       // true if every task is being scheduled
+  private Set<Task>                            m_changed;   // tasks changed since last published schedule
+  private DateTime[]                           m_start;     // start of each task by index, as scheduled
+  private DateTime[]                           m_end;       // end of each task by index, as scheduled
+  private GanttData[]                          m_gantt;     // gantt data of each task by index, or null
+  private int[]                                m_groups;    // group of each task if run in parallel, or null
+  private volatile boolean                     m_cancelled; // true if run should stop before its next task
+  private AtomicInteger                        m_done;      // number of tasks scheduled so far
+
+  private static final int                     PARALLEL_MIN = 1000; // fewest tasks worth scheduling in parallel
+  private static final ThreadLocal<Scheduling> RUNNING      = new ThreadLocal<>(); // run on current thread
+
+  // fork-join task that schedules one group of independent tasks into its own work, so groups are
+  // scheduled in parallel
+  private class GroupSchedule extends RecursiveTask<Work>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Task[]      m_group;
+
+    private GroupSchedule( Task[] group )
+    {
+      m_group = group;
+    }
+
+    @Override
+    protected Work compute()
+    {
+      // schedule tasks in scheduling order, noting this thread is running a schedule while doing so
+      boolean running = RUNNING.get() != null;
+      if ( !running )
+        RUNNING.set( Scheduling.this );
+
+      try
+      {
+        Work work = new Work();
+        for ( Task task : m_group )
+        {
+          if ( m_cancelled )
+            break;
+          task.schedule( Scheduling.this, work );
+          m_done.incrementAndGet();
+        }
+
+        return work;
+      }
+      finally
+      {
+        if ( !running )
+          RUNNING.remove();
+      }
+    }
+  }
+
+  /**************************************** constructor ******************************************/
+  Scheduling( int[] order, Task[] tasks, Work work, Set<Task> cleared, boolean all, Set<Task> changed )
+  {
+    // initialise private variables
+    m_order = order;
+    m_tasks = tasks;
+    m_work = work;
+    m_cleared = cleared;
+    m_all = all;
+    m_changed = changed;
+    m_done = new AtomicInteger();
+
+    // start with current task dates, so tasks not rescheduled are read as they are
+    Tasks list = JPlanner.plan.tasks;
+    m_start = new DateTime[list.size()];
+    m_end = new DateTime[list.size()];
+    m_gantt = new GanttData[list.size()];
+    for ( int index = 0; index < list.size(); index++ )
+    {
+      Task task = list.get( index );
+      if ( !task.isNull() )
+      {
+        m_start[index] = task.getStart();
+        m_end[index] = task.getEnd();
+      }
+    }
+
+    // split tasks into groups that share no predecessors, summaries or resources if run in parallel
+    if ( m_all && m_tasks.length >= PARALLEL_MIN && ForkJoinPool.getCommonPoolParallelism() > 1 )
+      m_groups = getGroups( list );
+  }
+
+  /********************************************* run *********************************************/
+  public boolean run()
+  {
+    // schedule tasks in order, returning false if cancelled before all scheduled
+    RUNNING.set( this );
+    try
+    {
+      // copy work without efforts of tasks being rescheduled here rather than when prepared, as it
+      // takes time in proportion to whole plan, the work copied is not changed once published
+      if ( m_cleared != null )
+      {
+        Work work = new Work( m_work );
+        work.clear( m_cleared );
+        m_work = work;
+        m_cleared = null;
+      }
+
+      if ( m_groups != null )
+        return runParallel();
+
+      for ( Task task : m_tasks )
+      {
+        if ( m_cancelled )
+          return false;
+        task.schedule( this, m_work );
+        m_done.incrementAndGet();
+      }
+
+      return true;
+    }
+    finally
+    {
+      RUNNING.remove();
+    }
+  }
+
+  /***************************************** runParallel *****************************************/
+  private boolean runParallel()
+  {
+    // count groups found when run prepared
+    Tasks list = JPlanner.plan.tasks;
+    int[] groups = m_groups;
+    int count = 0;
+    for ( int group : groups )
+      count = Math.max( count, group + 1 );
+    JPlanner.trace( "Scheduling " + m_tasks.length + " tasks in " + count + " groups" );
+
+    // gather each group's tasks in scheduling order
+    int[] sizes = new int[count];
+    for ( Task task : m_tasks )
+      if ( groups[list.indexOf( task )] >= 0 )
+        sizes[groups[list.indexOf( task )]]++;
+    Task[][] tasks = new Task[count][];
+    for ( int group = 0; group < count; group++ )
+    {
+      tasks[group] = new Task[sizes[group]];
+      sizes[group] = 0;
+    }
+    for ( Task task : m_tasks )
+    {
+      int group = groups[list.indexOf( task )];
+      if ( group >= 0 )
+        tasks[group][sizes[group]++] = task;
+    }
+
+    // schedule each group into own work
+    ArrayList<GroupSchedule> schedules = new ArrayList<>( count );
+    for ( int group = 0; group < count; group++ )
+      schedules.add( new GroupSchedule( tasks[group] ) );
+    ForkJoinTask.invokeAll( schedules );
+    if ( m_cancelled )
+      return false;
+
+    // append efforts in scheduling order so work is identical to scheduling serially, and schedule
+    // tasks not in any group (i.e. task 0) which need the tasks before them complete
+    for ( Task task : m_tasks )
+    {
+      int group = groups[list.indexOf( task )];
+      if ( group >= 0 )
+        m_work.append( schedules.get( group ).join(), task );
+      else
+      {
+        task.schedule( this, m_work );
+        m_done.incrementAndGet();
+      }
+    }
+
+    return true;
+  }
+
+  /**************************************** isScheduling *****************************************/
+  static boolean isScheduling()
+  {
+    // return true if current thread is running a schedule
+    return RUNNING.get() != null;
+  }
+
+  /**************************************** checkPrepared ****************************************/
+  static void checkPrepared( Object data )
+  {
+    // data shared with plan is prepared before a run, so if not prepared on a thread running a
+    // schedule the plan has changed since the run started, and the run is cancelled so can stop
+    if ( isScheduling() )
+      throw new CancellationException( "Not prepared for scheduling " + data );
+  }
+
+  /****************************************** getStart *******************************************/
+  DateTime getStart( Task task )
+  {
+    // return task start as scheduled by this run, or as was if not rescheduled
+    return m_start[task.getIndex()];
+  }
+
+  /******************************************* getEnd ********************************************/
+  DateTime getEnd( Task task )
+  {
+    // return task end as scheduled by this run, or as was if not rescheduled
+    return m_end[task.getIndex()];
+  }
+
+  /****************************************** getGantt *******************************************/
+  GanttData getGantt( Task task )
+  {
+    // return task gantt data created by this run, or null if none
+    return m_gantt[task.getIndex()];
+  }
+
+  /***************************************** setSchedule *****************************************/
+  void setSchedule( Task task, DateTime start, DateTime end, GanttData gantt )
+  {
+    // record task dates and gantt data found by this run, each task is only set by one thread
+    int index = task.getIndex();
+    m_start[index] = start;
+    m_end[index] = end;
+    m_gantt[index] = gantt;
+  }
+
+  /****************************************** getGroups ******************************************/
+  private static int[] getGroups( Tasks list )
+  {
+    // return group of each task, tasks are in the same group if linked by a predecessor, summary or
+    // assigned resource, so groups can be scheduled independently (null tasks and task 0 are -1)
+    int[] parent = new int[list.size()];
+    for ( int index = 0; index < parent.length; index++ )
+      parent[index] = index;
+
+    HashMap<Resource, Integer> users = new HashMap<>();
+    for ( int index = 1; index < parent.length; index++ )
+    {
+      Task task = list.get( index );
+      if ( task.isNull() )
+        continue;
+
+      if ( task.getSummaryStart() > 0 )
+        join( parent, index, task.getSummaryStart() );
+
+      Predecessors preds = task.getPredecessors();
+      for ( int p = 0; p < preds.getCount(); p++ )
+      {
+        Task other = preds.get( p ).task;
+        if ( other != null && !other.isNull() && other != task && list.indexOf( other ) > 0 )
+          join( parent, index, list.indexOf( other ) );
+      }
+
+      if ( task.getResources() != null )
+        for ( String tag : task.getResources().getTags() )
+          for ( Resource resource : JPlanner.plan.resources.getResourceList( tag ) )
+          {
+            Integer user = users.putIfAbsent( resource, index );
+            if ( user != null )
+              join( parent, index, user );
+          }
+    }
+
+    // number groups in order of their first task
+    int[] groups = new int[parent.length];
+    Arrays.fill( groups, -1 );
+    int count = 0;
+    for ( int index = 1; index < parent.length; index++ )
+      if ( !list.get( index ).isNull() )
+      {
+        int root = find( parent, index );
+        if ( groups[root] < 0 )
+          groups[root] = count++;
+        groups[index] = groups[root];
+      }
+
+    return groups;
+  }
+
+  /******************************************** find *********************************************/
+  private static int find( int[] parent, int index )
+  {
+    // return root of index's set, halving the path as it is followed
+    while ( parent[index] != index )
+    {
+      parent[index] = parent[parent[index]];
+      index = parent[index];
+    }
+
+    return index;
+  }
+
+  /******************************************** join *********************************************/
+  private static void join( int[] parent, int index1, int index2 )
+  {
+    // merge the sets containing the two indexes
+    parent[find( parent, index1 )] = find( parent, index2 );
+  }
+
+  /******************************************* cancel ********************************************/
+  public void cancel()
+  {
+    // request run stops before scheduling its next task
+    m_cancelled = true;
+  }
+
+  /***************************************** isCancelled *****************************************/
+  public boolean isCancelled()
+  {
+    return m_cancelled;
+  }
+
+  /***************************************** getProgress *****************************************/
+  public double getProgress()
+  {
+    // return fraction of tasks scheduled so far, may be called from any thread
+    return m_tasks.length == 0 ? 1.0 : Math.min( 1.0, m_done.get() / (double) m_tasks.length );
+  }
+
+  /****************************************** getOrder *******************************************/
+  int[] getOrder()
+  {
+    return m_order;
+  }
+
+  /****************************************** getTasks *******************************************/
+  Task[] getTasks()
+  {
+    return m_tasks;
+  }
+
+  /******************************************* getWork *******************************************/
+  Work getWork()
+  {
+    return m_work;
+  }
+
+  /******************************************** isAll ********************************************/
+  boolean isAll()
+  {
+    return m_all;
+  }
+
+  /***************************************** getChanged ******************************************/
+  Set<Task> getChanged()
+  {
+    return m_changed;
+  }
+
+  /****************************************** toString *******************************************/
+  @Override
+  public String toString()
+  {
+    // convert to string
+    String hash = super.toString();
+    String id = hash.substring( hash.lastIndexOf( '.' ) + 1 );
+    return id + "[" + m_done.get() + " of " + m_tasks.length + " Tasks" + ( m_cancelled ? ", cancelled]" : "]" );
+  }
+
+}
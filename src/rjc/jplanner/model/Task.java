@@ -29,7 +29,7 @@ import rjc.jplanner.XmlLabels;
 /******************************** Single task within overall plan ********************************/
 /*************************************************************************************************/
 
-public class Task implements Comparable<Task>
+public class Task
 {
   private String          m_title;              // free text title
   private TimeSpan        m_duration;           // duration of task
@@ -41,6 +41,7 @@ public class Task implements Comparable<Task>
   private TaskType        m_type;               // task type
   private int             m_priority;           // overall task priority (0 to 999)
   private DateTime        m_deadline;           // task warning deadline
+  private Estimate        m_estimate;           // three-point duration estimate for risk simulation, or null
   private String          m_cost;               // calculated cost based on resource use
   private String          m_comment;            // free text comment
 
@@ -48,6 +49,11 @@ public class Task implements Comparable<Task>
   private int             m_summaryStart;       // index of this task's summary, ultimately task 0
   private int             m_summaryEnd;         // if summary, index of summary end, otherwise -1 
   private GanttData       m_gantt;              // data for gantt bar display
+  private DateTime        m_rollupStart;        // if summary, cached start of sub-tasks, or null
+  private DateTime        m_rollupEnd;          // if summary, cached end of sub-tasks, or null
+  private TimeSpan        m_rollupDuration;     // if summary, cached duration, or null
+  private TimeSpan        m_rollupWork;         // if summary, cached work including sub-tasks, or null
+  private int             m_index;              // position in plan task list, maintained by list
 
   public static final int SECTION_TITLE    = 0;
   public static final int SECTION_DURATION = 1;
@@ -61,7 +67,11 @@ public class Task implements Comparable<Task>
   public static final int SECTION_DEADLINE = 9;
   public static final int SECTION_COST     = 10;
   public static final int SECTION_COMMENT  = 11;
-  public static final int SECTION_MAX      = 11;
+  public static final int SECTION_ESTIMATE = 12;
+  public static final int SECTION_TOTAL    = 13;
+  public static final int SECTION_FREE     = 14;
+  public static final int SECTION_RISK     = 15;
+  public static final int SECTION_MAX      = 15;
 
   /**************************************** constructor ******************************************/
   public Task()
@@ -112,6 +122,9 @@ public class Task implements Comparable<Task>
           case XmlLabels.XML_DEADLINE:
             m_deadline = new DateTime( xsr.getAttributeValue( i ) );
             break;
+          case XmlLabels.XML_ESTIMATE:
+            m_estimate = new Estimate( xsr.getAttributeValue( i ) );
+            break;
           case XmlLabels.XML_COST:
             m_cost = xsr.getAttributeValue( i );
             break;
@@ -181,6 +194,18 @@ public class Task implements Comparable<Task>
     if ( section == SECTION_DEADLINE )
       return m_deadline;
 
+    if ( section == SECTION_ESTIMATE )
+      return m_estimate;
+
+    if ( section == SECTION_TOTAL )
+      return JPlanner.plan.tasks.getCriticalPath().getTotalFloat( this );
+
+    if ( section == SECTION_FREE )
+      return JPlanner.plan.tasks.getCriticalPath().getFreeFloat( this );
+
+    if ( section == SECTION_RISK )
+      return JPlanner.plan.tasks.getCriticality( this );
+
     if ( section == SECTION_COST )
       return m_cost;
 
@@ -196,10 +221,16 @@ public class Task implements Comparable<Task>
     // set task value for given section
     if ( section == SECTION_TITLE )
     {
-      if ( isNull() )
+      boolean wasNull = isNull();
+      if ( wasNull )
+      {
+        JPlanner.plan.tasks.removeTaskTags( this );
         initialise();
+      }
 
       m_title = (String) newValue;
+      if ( wasNull != isNull() )
+        JPlanner.plan.tasks.markNullChanged( this );
     }
 
     else if ( section == SECTION_DURATION )
@@ -224,10 +255,12 @@ public class Task implements Comparable<Task>
 
     else if ( section == SECTION_RES )
     {
+      JPlanner.plan.tasks.removeTaskTags( this );
       if ( newValue == null )
         m_resources = new TaskResources();
       else
         m_resources = (TaskResources) newValue;
+      JPlanner.plan.tasks.addTaskTags( this );
     }
 
     else if ( section == SECTION_TYPE )
@@ -239,6 +272,9 @@ public class Task implements Comparable<Task>
     else if ( section == SECTION_DEADLINE )
       m_deadline = (DateTime) newValue;
 
+    else if ( section == SECTION_ESTIMATE )
+      m_estimate = (Estimate) newValue;
+
     else if ( section == SECTION_COMMENT )
       m_comment = (String) newValue;
 
@@ -247,6 +283,16 @@ public class Task implements Comparable<Task>
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // note task needs rescheduling, and if ordering may have changed the graph needs updating
+    if ( section != SECTION_TITLE && section != SECTION_COMMENT && section != SECTION_COST
+        && section != SECTION_ESTIMATE )
+    {
+      JPlanner.plan.tasks.markChanged( this );
+      clearRollups( true );
+    }
+    if ( section == SECTION_PRED || section == SECTION_PRIORITY )
+      JPlanner.plan.tasks.markGraphChanged( this );
   }
 
   /****************************************** isNull *********************************************/
@@ -290,6 +336,18 @@ public class Task implements Comparable<Task>
     if ( num == SECTION_DEADLINE )
       return "Deadline";
 
+    if ( num == SECTION_ESTIMATE )
+      return "Estimate";
+
+    if ( num == SECTION_TOTAL )
+      return "Total float";
+
+    if ( num == SECTION_FREE )
+      return "Free float";
+
+    if ( num == SECTION_RISK )
+      return "Criticality";
+
     if ( num == SECTION_COST )
       return "Cost";
 
@@ -327,6 +385,8 @@ public class Task implements Comparable<Task>
       xsw.writeAttribute( XmlLabels.XML_PRIORITY, Integer.toString( m_priority ) );
       if ( m_deadline != null )
         xsw.writeAttribute( XmlLabels.XML_DEADLINE, m_deadline.toString() );
+      if ( m_estimate != null )
+        xsw.writeAttribute( XmlLabels.XML_ESTIMATE, m_estimate.toString() );
       if ( m_cost != null )
         xsw.writeAttribute( XmlLabels.XML_COST, m_cost );
       if ( m_comment != null )
@@ -346,26 +406,6 @@ public class Task implements Comparable<Task>
     xsw.writeAttribute( XmlLabels.XML_PREDS, m_predecessors.toString() );
   }
 
-  /****************************************** compareTo ******************************************/
-  @Override
-  public int compareTo( Task other )
-  {
-    // sort comparison first check for predecessors
-    if ( this.hasPredecessor( other ) )
-      return 1;
-    if ( other.hasPredecessor( this ) )
-      return -1;
-
-    // then by priority
-    if ( m_priority < other.m_priority )
-      return 1;
-    if ( m_priority > other.m_priority )
-      return -1;
-
-    // finally by index
-    return this.getIndex() - other.getIndex();
-  }
-
   /***************************************** toString ********************************************/
   @Override
   public String toString()
@@ -379,20 +419,8 @@ public class Task implements Comparable<Task>
   /**************************************** hasPredecessor ***************************************/
   public boolean hasPredecessor( Task other )
   {
-    // return true if task is predecessor
-    if ( m_predecessors.hasPredecessor( other ) )
-      return true;
-
-    // if task is summary, then sub-tasks are implicit predecessors
-    if ( m_summaryEnd > 0 )
-    {
-      int thisNum = this.getIndex();
-      int otherNum = other.getIndex();
-      if ( otherNum > thisNum && otherNum <= m_summaryEnd )
-        return true;
-    }
-
-    return false;
+    // return true if other task is upstream, via predecessors or implicitly via summaries
+    return JPlanner.plan.tasks.getGraph().isUpstream( other, this );
   }
 
   /***************************************** isSummary *******************************************/
@@ -423,6 +451,13 @@ public class Task implements Comparable<Task>
     m_summaryEnd = index;
   }
 
+  /*************************************** getSummaryStart ***************************************/
+  public int getSummaryStart()
+  {
+    // return index of this task's summary, ultimately task 0
+    return m_summaryStart;
+  }
+
   /*************************************** setSummaryStart ***************************************/
   public void setSummaryStart( int index )
   {
@@ -431,36 +466,50 @@ public class Task implements Comparable<Task>
   }
 
   /****************************************** schedule *******************************************/
-  public void schedule()
+  public void schedule( Scheduling run, Work work )
   {
-    // TODO Auto-generated method stub
-    JPlanner.trace( "Scheduling " + this );
-
-    // if summary no scheduling needed, just create gantt data
+    // schedule task recording dates in run and adding its resource efforts to specified work, this
+    // task and other tasks are only read, as dates are set on tasks when the run is published
+    // if summary no scheduling needed, just roll-up sub-tasks and create gantt data
     if ( isSummary() )
     {
-      if ( m_gantt == null )
-        m_gantt = new GanttData();
-      m_gantt.setSummary( getStart(), getEnd() );
-      m_resources.assign( this );
+      DateTime start = DateTime.MAX_VALUE;
+      DateTime end = DateTime.MIN_VALUE;
+      for ( int index = getIndex() + 1; index <= m_summaryEnd; index = nextSibling( index ) )
+      {
+        // skip null tasks and any not yet scheduled
+        Task task = JPlanner.plan.getTask( index );
+        if ( task.isNull() || run.getStart( task ) == null || run.getEnd( task ) == null )
+          continue;
+
+        if ( run.getStart( task ).isLessThan( start ) )
+          start = run.getStart( task );
+        if ( end.isLessThan( run.getEnd( task ) ) )
+          end = run.getEnd( task );
+      }
+
+      GanttData gantt = new GanttData();
+      gantt.setSummary( start, end );
+      run.setSchedule( this, start, end, gantt );
+      m_resources.assign( this, start, end, work );
       return;
     }
 
     if ( m_type == TaskType.ASAP_FDUR )
     {
-      schedule_ASAP_FDUR();
+      schedule_ASAP_FDUR( run, work );
       return;
     }
 
     if ( m_type == TaskType.ASAP_FWORK )
     {
-      schedule_ASAP_FWORK();
+      schedule_ASAP_FWORK( run, work );
       return;
     }
 
     if ( m_type == TaskType.FIXED_PERIOD )
     {
-      schedule_FIXED_PERIOD();
+      schedule_FIXED_PERIOD( run, work );
       return;
     }
 
@@ -472,18 +521,47 @@ public class Task implements Comparable<Task>
 
     if ( m_type == TaskType.SON_FWORK )
     {
-      schedule_SON_FWORK();
+      schedule_SON_FWORK( run, work );
       return;
     }
 
     throw new UnsupportedOperationException( "Task type = " + m_type );
   }
 
+  /*************************************** recordSchedule ****************************************/
+  private void recordSchedule( Scheduling run, long start, long end, Work work, boolean integrate )
+  {
+    // record start and end in run with gantt task bar data, and add resource allocations to work
+    // either following their free capacity or for whole task
+    DateTime startDT = new DateTime( start );
+    DateTime endDT = end == start ? startDT : new DateTime( end );
+    GanttData gantt = new GanttData();
+    gantt.setSimpleTask( startDT, endDT );
+    run.setSchedule( this, startDT, endDT, gantt );
+
+    if ( integrate )
+      m_resources.assignWork( this, start, end, work );
+    else
+      m_resources.assign( this, startDT, endDT, work );
+  }
+
   /************************************* schedule_SON_FWORK **************************************/
-  private void schedule_SON_FWORK()
+  private void schedule_SON_FWORK( Scheduling run, Work work )
   {
-    // TODO Auto-generated method stub
-    JPlanner.trace( "NOT IMPLEMENTED YET !!!" );
+    // start on user specified start (ignoring predecessors), end when resources complete the work
+    Calendar planCal = JPlanner.plan.getDefaultCalendar();
+    DateTime startOn = m_start == null ? JPlanner.plan.getDefaultStart() : m_start;
+    long start = planCal.getWorkDateTimeUpMS( startOn.getMilliseconds() );
+    long end = start;
+    if ( m_work != null && m_work.getNumber() > 0.0 )
+      end = m_resources.getWorkEndMS( start, getWorkDays( start, true ), work );
+
+    // ensure end is always greater or equal to start
+    if ( end < start )
+      end = start;
+
+    // set dates, gantt task bar data, and resource allocations following their free capacity
+    recordSchedule( run, start, end, work, true );
   }
 
   /************************************* schedule_SON_FDUR ***************************************/
@@ -494,19 +572,14 @@ public class Task implements Comparable<Task>
   }
 
   /*********************************** schedule_FIXED_PERIOD *************************************/
-  private void schedule_FIXED_PERIOD()
+  private void schedule_FIXED_PERIOD( Scheduling run, Work work )
   {
-    // ignore predecessors, no scheduling, set gantt task bar data
-    if ( m_gantt == null )
-      m_gantt = new GanttData();
-    m_gantt.setSimpleTask( m_start, m_end );
-
-    // set resource allocations
-    m_resources.assign( this );
+    // ignore predecessors, no scheduling, set gantt task bar data and resource allocations
+    recordSchedule( run, m_start.getMilliseconds(), m_end.getMilliseconds(), work, false );
   }
 
   /************************************* schedule_ASAP_FWORK *************************************/
-  private void schedule_ASAP_FWORK()
+  private void schedule_ASAP_FWORK( Scheduling run, Work work )
   {
     // depending on predecessors determine task start & end
     boolean hasToStart = m_predecessors.hasToStart();
@@ -530,48 +603,66 @@ public class Task implements Comparable<Task>
       }
     }
 
+    // calculate in epoch-milliseconds, only creating date-times for the final start & end
     Calendar planCal = JPlanner.plan.getDefaultCalendar();
+    long start;
+    long end;
 
-    if ( m_work.getNumber() == 0.0 )
+    if ( m_work == null || m_work.getNumber() <= 0.0 )
     {
       // milestone
       if ( hasToStart )
-        m_start = planCal.getWorkDateTimeDown( startDueToPredecessors() );
+        start = planCal.getWorkDateTimeDownMS( startDueToPredecessors( run ) );
       else if ( hasToFinish )
-        m_start = planCal.getWorkDateTimeDown( endDueToPredecessors() );
+        start = planCal.getWorkDateTimeDownMS( endDueToPredecessors( run ) );
       else
-        m_start = planCal.getWorkDateTimeUp( JPlanner.plan.getDefaultStart() );
+        start = planCal.getWorkDateTimeUpMS( JPlanner.plan.getDefaultStart().getMilliseconds() );
 
-      m_end = m_start;
+      end = start;
     }
     else
     {
-      // not milestone
+      // not milestone, integrate assigned resources free capacity until the work is done
       if ( hasToStart )
       {
-        JPlanner.trace( "HAS TO START - NOT IMPLEMENTED YET !!!" );
+        start = planCal.getWorkDateTimeUpMS( startDueToPredecessors( run ) );
+        end = m_resources.getWorkEndMS( start, getWorkDays( start, true ), work );
       }
       else if ( hasToFinish )
       {
-        JPlanner.trace( "HAS TO FINISH - NOT IMPLEMENTED YET !!!" );
+        end = planCal.getWorkDateTimeDownMS( endDueToPredecessors( run ) );
+        start = m_resources.getWorkStartMS( end, getWorkDays( end, false ), work );
       }
       else
       {
-        JPlanner.trace( "NEITHER - NOT IMPLEMENTED YET !!!" );
+        start = planCal.getWorkDateTimeUpMS( JPlanner.plan.getDefaultStart().getMilliseconds() );
+        end = m_resources.getWorkEndMS( start, getWorkDays( start, true ), work );
+      }
+    }
 
-        if ( m_work.getUnits() != TimeSpan.UNIT_DAYS )
-          JPlanner.trace( "DON'T KNOW HOW TO HANDLE UNITS !!! " + m_work );
+    // ensure end is always greater or equal to start
+    if ( end < start )
+      end = start;
 
-        m_start = planCal.getWorkDateTimeUp( JPlanner.plan.getDefaultStart() );
-        double work = m_resources.getPotentialWorkDone( m_start, m_start.endOfDayMidnight() );
+    // set dates, gantt task bar data, and resource allocations following their free capacity
+    recordSchedule( run, start, end, work, true );
+  }
 
-      }
-    }
+  /***************************************** getWorkDays *****************************************/
+  private double getWorkDays( long ms, boolean forward )
+  {
+    // return task work as work-days, converting other units via plan calendar forward or back from ms
+    if ( m_work.getUnits() == TimeSpan.UNIT_DAYS )
+      return m_work.getNumber();
 
+    Calendar planCal = JPlanner.plan.getDefaultCalendar();
+    if ( forward )
+      return planCal.workBetweenMS( ms, planCal.workTimeSpanMS( ms, m_work ) );
+    return planCal.workBetweenMS( planCal.workTimeSpanMS( ms, m_work.minus() ), ms );
   }
 
   /************************************* schedule_ASAP_FDUR **************************************/
-  private void schedule_ASAP_FDUR()
+  private void schedule_ASAP_FDUR( Scheduling run, Work work )
   {
     // depending on predecessors determine task start & end
     boolean hasToStart = m_predecessors.hasToStart();
@@ -595,50 +686,61 @@ public class Task implements Comparable<Task>
       }
     }
 
+    // calculate in epoch-milliseconds, only creating date-times for the final start & end
     Calendar planCal = JPlanner.plan.getDefaultCalendar();
-    if ( m_duration.getNumber() == 0.0 )
+    double duration = m_duration.getNumber();
+    char units = m_duration.getUnits();
+    long start;
+    long end;
+
+    if ( duration == 0.0 )
     {
       // milestone
       if ( hasToStart )
-        m_start = planCal.getWorkDateTimeDown( startDueToPredecessors() );
+        start = planCal.getWorkDateTimeDownMS( startDueToPredecessors( run ) );
       else if ( hasToFinish )
-        m_start = planCal.getWorkDateTimeDown( endDueToPredecessors() );
+        start = planCal.getWorkDateTimeDownMS( endDueToPredecessors( run ) );
       else
-        m_start = planCal.getWorkDateTimeUp( JPlanner.plan.getDefaultStart() );
+        start = planCal.getWorkDateTimeUpMS( JPlanner.plan.getDefaultStart().getMilliseconds() );
 
-      m_end = m_start;
+      end = start;
     }
     else
     {
       // not milestone
       if ( hasToStart )
       {
-        m_start = planCal.getWorkDateTimeUp( startDueToPredecessors() );
-        m_end = planCal.getWorkDateTimeDown( planCal.workTimeSpan( m_start, m_duration ) );
+        start = planCal.getWorkDateTimeUpMS( startDueToPredecessors( run ) );
+        end = planCal.getWorkDateTimeDownMS( planCal.workTimeSpanMS( start, duration, units ) );
       }
       else if ( hasToFinish )
       {
-        m_end = planCal.getWorkDateTimeDown( endDueToPredecessors() );
-        m_start = planCal.getWorkDateTimeUp( planCal.workTimeSpan( m_end, m_duration.minus() ) );
+        end = planCal.getWorkDateTimeDownMS( endDueToPredecessors( run ) );
+        start = planCal.getWorkDateTimeUpMS( planCal.workTimeSpanMS( end, -duration, units ) );
       }
       else
       {
-        m_start = planCal.getWorkDateTimeUp( JPlanner.plan.getDefaultStart() );
-        m_end = planCal.getWorkDateTimeDown( planCal.workTimeSpan( m_start, m_duration ) );
+        start = planCal.getWorkDateTimeUpMS( JPlanner.plan.getDefaultStart().getMilliseconds() );
+        end = planCal.getWorkDateTimeDownMS( planCal.workTimeSpanMS( start, duration, units ) );
       }
+
+      // if levelling, delay task until assigned resources free for its whole duration, as predecessors
+      // only ever limit how early a task can start or finish delaying is always allowed
+      if ( JPlanner.plan.isLevelling() )
+        for ( long free = m_resources.whenFree( start, end, work ); free > start; free = m_resources
+            .whenFree( start, end, work ) )
+        {
+          start = planCal.getWorkDateTimeUpMS( free );
+          end = planCal.getWorkDateTimeDownMS( planCal.workTimeSpanMS( start, duration, units ) );
+        }
     }
 
     // ensure end is always greater or equal to start
-    if ( m_end.isLessThan( m_start ) )
-      m_end = m_start;
+    if ( end < start )
+      end = start;
 
-    // set gantt task bar data
-    if ( m_gantt == null )
-      m_gantt = new GanttData();
-    m_gantt.setSimpleTask( m_start, m_end );
-
-    // set resource allocations
-    m_resources.assign( this );
+    // set dates, gantt task bar data, and resource allocations
+    recordSchedule( run, start, end, work, false );
   }
 
   /******************************************* getEnd ********************************************/
@@ -647,19 +749,9 @@ public class Task implements Comparable<Task>
     // return task or summary end date-time
     if ( isSummary() )
     {
-      // loop through each subtask
-      DateTime end = DateTime.MIN_VALUE;
-      for ( int id = getIndex() + 1; id <= m_summaryEnd; id++ )
-      {
-        // if task isn't summary, check if its end is after current latest
-        Task task = JPlanner.plan.getTask( id );
-        if ( task.isNull() )
-          break;
-        if ( !task.isSummary() && end.isLessThan( task.m_end ) )
-          end = task.m_end;
-      }
-
-      return end;
+      if ( m_rollupEnd == null )
+        rollupDates();
+      return m_rollupEnd;
     }
 
     return m_end;
@@ -671,19 +763,9 @@ public class Task implements Comparable<Task>
     // return task or summary start date-time
     if ( isSummary() )
     {
-      // loop through each subtask
-      DateTime start = DateTime.MAX_VALUE;
-      for ( int id = getIndex() + 1; id <= m_summaryEnd; id++ )
-      {
-        // if task isn't summary, check if its start is before current earliest
-        Task task = JPlanner.plan.getTask( id );
-        if ( task.isNull() )
-          break;
-        if ( !task.isSummary() && task.m_start.isLessThan( start ) )
-          start = task.m_start;
-      }
-
-      return start;
+      if ( m_rollupStart == null )
+        rollupDates();
+      return m_rollupStart;
     }
 
     return m_start;
@@ -700,21 +782,20 @@ public class Task implements Comparable<Task>
     if ( !isSummary() )
       return m_work;
 
-    // work of summary is sum of work in this task and sub-tasks
-    double work = m_work.getNumber();
-    for ( int index = getIndex() + 1; index <= getSummaryEnd(); index++ )
+    // work of summary is sum of work in this task and sub-tasks, cached until a sub-task changes
+    if ( m_rollupWork == null )
     {
-      Task subtask = JPlanner.plan.getTask( index );
-      if ( !subtask.isNull() )
+      double work = m_work.getNumber();
+      for ( int index = getIndex() + 1; index <= m_summaryEnd; index = nextSibling( index ) )
       {
-        if ( subtask.m_work == null )
-          subtask.m_work = JPlanner.plan.work.getWork( subtask );
-
-        work += subtask.m_work.getNumber();
+        Task subtask = JPlanner.plan.getTask( index );
+        if ( !subtask.isNull() )
+          work += subtask.getWork().getNumber();
       }
+      m_rollupWork = new TimeSpan( work, TimeSpan.UNIT_DAYS );
     }
 
-    return new TimeSpan( work, TimeSpan.UNIT_DAYS );
+    return m_rollupWork;
   }
 
   /***************************************** getDuration *****************************************/
@@ -722,18 +803,106 @@ public class Task implements Comparable<Task>
   {
     // return task or summary duration time-span
     if ( isSummary() )
-      return JPlanner.plan.getDefaultCalendar().workBetween( getStart(), getEnd() );
+    {
+      if ( m_rollupDuration == null )
+        rollupDates();
+      return m_rollupDuration;
+    }
     if ( m_type == TaskType.FIXED_PERIOD )
       return JPlanner.plan.getDefaultCalendar().workBetween( m_start, m_end );
 
     return m_duration;
   }
 
+  /***************************************** rollupDates *****************************************/
+  private void rollupDates()
+  {
+    // calculate summary start and end from direct sub-tasks, using their cached roll-ups
+    DateTime start = DateTime.MAX_VALUE;
+    DateTime end = DateTime.MIN_VALUE;
+    for ( int index = getIndex() + 1; index <= m_summaryEnd; index = nextSibling( index ) )
+    {
+      // skip null tasks and any not yet scheduled
+      Task task = JPlanner.plan.getTask( index );
+      if ( task.isNull() || task.getStart() == null || task.getEnd() == null )
+        continue;
+
+      if ( task.getStart().isLessThan( start ) )
+        start = task.getStart();
+      if ( end.isLessThan( task.getEnd() ) )
+        end = task.getEnd();
+    }
+
+    m_rollupStart = start;
+    m_rollupEnd = end;
+    m_rollupDuration = JPlanner.plan.getDefaultCalendar().workBetween( start, end );
+  }
+
+  /***************************************** nextSibling *****************************************/
+  private int nextSibling( int index )
+  {
+    // return index after sub-task and any of its own sub-tasks
+    Task task = JPlanner.plan.getTask( index );
+    if ( !task.isNull() && task.isSummary() )
+      return task.m_summaryEnd + 1;
+    return index + 1;
+  }
+
+  /***************************************** setSchedule *****************************************/
+  void setSchedule( DateTime start, DateTime end, GanttData gantt )
+  {
+    // set dates and gantt data from a published scheduling run, summary dates are rolled-up instead
+    if ( !isSummary() )
+    {
+      m_start = start;
+      m_end = end;
+    }
+    if ( gantt != null )
+      m_gantt = gantt;
+    clearCached();
+  }
+
+  /***************************************** clearCached *****************************************/
+  void clearCached()
+  {
+    // clear work calculated from efforts and roll-ups, which may have been read before task scheduled
+    if ( !isNull() && !isSectionEditable( SECTION_WORK ) )
+      m_work = null;
+
+    m_rollupStart = null;
+    m_rollupEnd = null;
+    m_rollupDuration = null;
+    m_rollupWork = null;
+  }
+
+  /**************************************** clearRollups *****************************************/
+  void clearRollups( boolean stopEarly )
+  {
+    // clear cached roll-ups of this task and the summaries containing it, can stop early if summary
+    // structure unchanged as a summary only has a cached roll-up if all sub-summaries have too
+    Task task = this;
+    while ( true )
+    {
+      if ( stopEarly && task != this && task.m_rollupStart == null && task.m_rollupWork == null )
+        return;
+
+      task.m_rollupStart = null;
+      task.m_rollupEnd = null;
+      task.m_rollupDuration = null;
+      task.m_rollupWork = null;
+
+      int index = task.getIndex();
+      if ( index <= 0 )
+        return;
+      task = JPlanner.plan.getTask( task.m_summaryStart );
+    }
+  }
+
   /************************************ startDueToPredecessors ***********************************/
-  private DateTime startDueToPredecessors()
+  private long startDueToPredecessors( Scheduling run )
   {
     // get start based on this task's predecessors
-    DateTime start = m_predecessors.getStart();
+    long start = m_predecessors.getStartMS( run );
 
     // if indented also check start against summary(s) predecessors
     Task task = this;
@@ -742,8 +911,8 @@ public class Task implements Comparable<Task>
       task = JPlanner.plan.getTask( task.m_summaryStart );
 
       // if start from summary predecessors is later, use it instead
-      DateTime summaryStart = task.m_predecessors.getStart();
-      if ( start.isLessThan( summaryStart ) )
+      long summaryStart = task.m_predecessors.getStartMS( run );
+      if ( start < summaryStart )
         start = summaryStart;
     }
 
@@ -751,10 +920,10 @@ public class Task implements Comparable<Task>
   }
 
   /************************************* endDueToPredecessors ************************************/
-  private DateTime endDueToPredecessors()
+  private long endDueToPredecessors( Scheduling run )
   {
     // get end based on this task's predecessors
-    DateTime end = m_predecessors.getEnd();
+    long end = m_predecessors.getEndMS( run );
 
     // if indented also check end against summary(s) predecessors
     Task task = this;
@@ -763,8 +932,8 @@ public class Task implements Comparable<Task>
       task = JPlanner.plan.getTask( task.m_summaryStart );
 
       // if end from summary predecessors is later, use it instead
-      DateTime summaryEnd = task.m_predecessors.getEnd();
-      if ( summaryEnd.isLessThan( end ) )
+      long summaryEnd = task.m_predecessors.getEndMS( run );
+      if ( summaryEnd < end )
         end = summaryEnd;
     }
 
@@ -796,6 +965,20 @@ public class Task implements Comparable<Task>
     return JPlanner.plan.getIndex( this );
   }
 
+  /**************************************** getListIndex *****************************************/
+  int getListIndex()
+  {
+    // return position last recorded by list, not necessarily still valid
+    return m_index;
+  }
+
+  /**************************************** setListIndex *****************************************/
+  void setListIndex( int index )
+  {
+    // record position in list
+    m_index = index;
+  }
+
   /***************************************** getPriority *****************************************/
   public int getPriority()
   {
@@ -808,6 +991,12 @@ public class Task implements Comparable<Task>
     return m_deadline;
   }
 
+  /***************************************** getEstimate *****************************************/
+  public Estimate getEstimate()
+  {
+    return m_estimate;
+  }
+
   /****************************************** getIndent ******************************************/
   public int getIndent()
   {
@@ -830,12 +1019,12 @@ public class Task implements Comparable<Task>
     if ( isNull() )
       return false;
 
-    if ( section == SECTION_COST )
+    if ( section == SECTION_COST || section == SECTION_TOTAL || section == SECTION_FREE || section == SECTION_RISK )
       return false;
 
     if ( isSummary() )
       if ( section == SECTION_DURATION || section == SECTION_START || section == SECTION_END || section == SECTION_WORK
-          || section == SECTION_TYPE || section == SECTION_PRIORITY )
+          || section == SECTION_TYPE || section == SECTION_PRIORITY || section == SECTION_ESTIMATE )
         return false;
 
     return m_type.isSectionEditable( section );
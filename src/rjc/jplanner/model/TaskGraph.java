@@ -0,0 +1,626 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import rjc.jplanner.JPlanner;
+
+/*************************************************************************************************/
+/******************** Dependency graph of plan tasks for ordering scheduling *********************/
+/*************************************************************************************************/
+
+public class TaskGraph
+{
+  // each task has an exit node numbered the same as the task index, summaries also have an
+  // entry node numbered task index plus number of tasks, for other tasks entry and exit are same
+  private Tasks     m_tasks;       // tasks the graph was constructed from
+  private int       m_size;        // number of tasks (including null tasks)
+  private boolean[] m_active;      // true if node is used (i.e. task not null)
+  private int[]     m_parent;      // summary of each task when edges added
+  private int[][]   m_succ;        // successor nodes for each node
+  private int[]     m_succNum;     // number of successors for each node
+  private int[][]   m_pred;        // predecessor nodes for each node
+  private int[]     m_predNum;     // number of predecessors for each node
+  private int[][]   m_nullRef;     // tasks with each null task as predecessor, so no edge in graph
+  private int[]     m_nullRefNum;  // number of tasks with each null task as predecessor
+  private int[][]   m_nullPred;    // null tasks each task has as predecessor
+  private int[]     m_nullPredNum; // number of null tasks each task has as predecessor
+  private int[]     m_priority;    // task priorities
+  private int[]     m_order;       // task indexes in scheduling order, or null
+  private int[]     m_position;    // position of each task in scheduling order
+  private int[]     m_rank;        // topological rank of each node
+  private boolean   m_ranked;      // true once topological ranks determined
+  private boolean   m_circular;    // true if graph contains a cycle
+
+  /**************************************** constructor ******************************************/
+  public TaskGraph( Tasks tasks )
+  {
+    // initialise private variables
+    m_tasks = tasks;
+    m_size = tasks.size();
+    m_active = new boolean[2 * m_size];
+    m_parent = new int[m_size];
+    m_succ = new int[2 * m_size][];
+    m_succNum = new int[2 * m_size];
+    m_pred = new int[2 * m_size][];
+    m_predNum = new int[2 * m_size];
+    m_nullRef = new int[m_size][];
+    m_nullRefNum = new int[m_size];
+    m_nullPred = new int[m_size][];
+    m_nullPredNum = new int[m_size];
+    m_priority = new int[m_size];
+    m_rank = new int[2 * m_size];
+
+    // determine which nodes are used
+    for ( int index = 0; index < m_size; index++ )
+      setActive( index );
+
+    // add edges for summary/sub-task relationships and task predecessors
+    for ( int index = 0; index < m_size; index++ )
+      addEdges( index );
+
+    // determine scheduling order, which also gives topological rank of each node
+    getOrder();
+  }
+
+  /******************************************* update ********************************************/
+  public void update( Set<Task> changed )
+  {
+    // update graph for tasks with changed predecessors, summary, priority, or null state
+    int[] indexes = new int[changed.size()];
+    int count = 0;
+    for ( Task task : changed )
+    {
+      int index = m_tasks.indexOf( task );
+      if ( index >= 0 )
+        indexes[count++] = index;
+    }
+
+    // all old edges are removed before any new edges added, as summaries may change together
+    for ( int c = 0; c < count; c++ )
+      removeEdges( indexes[c] );
+    for ( int c = 0; c < count; c++ )
+      setActive( indexes[c] );
+    for ( int c = 0; c < count; c++ )
+      addEdges( indexes[c] );
+
+    m_order = null;
+  }
+
+  /******************************************* getSize *******************************************/
+  public int getSize()
+  {
+    // return number of tasks graph was constructed for
+    return m_size;
+  }
+
+  /******************************************** entry ********************************************/
+  private int entry( int index )
+  {
+    // return entry node for task index
+    if ( m_active[m_size + index] )
+      return m_size + index;
+    return index;
+  }
+
+  /****************************************** setActive ******************************************/
+  private void setActive( int index )
+  {
+    // set which nodes are used by task, and its priority
+    Task task = m_tasks.get( index );
+    m_active[index] = !task.isNull();
+    m_active[m_size + index] = !task.isNull() && task.isSummary();
+    m_priority[index] = task.isNull() ? 0 : task.getPriority();
+  }
+
+  /****************************************** addEdges *******************************************/
+  private void addEdges( int index )
+  {
+    // add edges owned by task, being those into its entry node and from its exit to its summary
+    Task task = m_tasks.get( index );
+    if ( index == 0 || task.isNull() )
+      return;
+
+    // summary entry precedes sub-task, and sub-task precedes summary exit
+    int summary = task.getSummaryStart();
+    m_parent[index] = summary;
+    link( entry( summary ), entry( index ) );
+    link( index, summary );
+
+    // predecessor exit precedes task entry, null predecessors are only noted so task can be found
+    // if they become non-null
+    Predecessors preds = task.getPredecessors();
+    for ( int p = 0; p < preds.getCount(); p++ )
+    {
+      Task other = preds.get( p ).task;
+      if ( other == null || other == task )
+        continue;
+      if ( other.isNull() )
+      {
+        int otherIndex = m_tasks.indexOf( other );
+        m_nullRef[otherIndex] = append( m_nullRef[otherIndex], m_nullRefNum[otherIndex]++, index );
+        m_nullPred[index] = append( m_nullPred[index], m_nullPredNum[index]++, otherIndex );
+      }
+      else
+        link( m_tasks.indexOf( other ), entry( index ) );
+    }
+  }
+
+  /***************************************** removeEdges *****************************************/
+  private void removeEdges( int index )
+  {
+    // remove edges owned by task as added by addEdges
+    if ( index == 0 || !m_active[index] )
+      return;
+
+    int node = entry( index );
+    while ( m_predNum[node] > 0 )
+      unlink( m_pred[node][m_predNum[node] - 1], node );
+    unlink( index, m_parent[index] );
+
+    while ( m_nullPredNum[index] > 0 )
+    {
+      int other = m_nullPred[index][--m_nullPredNum[index]];
+      if ( remove( m_nullRef[other], m_nullRefNum[other], index ) )
+        m_nullRefNum[other]--;
+    }
+  }
+
+  /**************************************** getReferrers *****************************************/
+  public int[] getReferrers( int index )
+  {
+    // return tasks with task as a direct predecessor when edges last added, from its successors
+    // (except its summary) or if it was null from those noting it
+    int[] referrers = new int[m_succNum[index] + m_nullRefNum[index]];
+    int count = 0;
+    for ( int s = 0; s < m_succNum[index]; s++ )
+    {
+      int succ = m_succ[index][s];
+      if ( succ != m_parent[index] )
+        referrers[count++] = succ < m_size ? succ : succ - m_size;
+    }
+    for ( int r = 0; r < m_nullRefNum[index]; r++ )
+      referrers[count++] = m_nullRef[index][r];
+
+    return Arrays.copyOf( referrers, count );
+  }
+
+  /******************************************** link *********************************************/
+  private void link( int from, int to )
+  {
+    // add edge to graph, restoring topological ranks if edge goes against them
+    m_succ[from] = append( m_succ[from], m_succNum[from]++, to );
+    m_pred[to] = append( m_pred[to], m_predNum[to]++, from );
+
+    if ( m_ranked && !m_circular && m_rank[from] > m_rank[to] )
+      reorder( from, to );
+  }
+
+  /******************************************* unlink ********************************************/
+  private void unlink( int from, int to )
+  {
+    // remove one occurrence of edge from graph, removal never invalidates topological ranks
+    if ( remove( m_succ[from], m_succNum[from], to ) )
+      m_succNum[from]--;
+    if ( remove( m_pred[to], m_predNum[to], from ) )
+      m_predNum[to]--;
+  }
+
+  /******************************************* append ********************************************/
+  private static int[] append( int[] array, int count, int value )
+  {
+    // return array with value added at count, growing array as needed
+    if ( array == null )
+      array = new int[4];
+    else if ( count == array.length )
+      array = Arrays.copyOf( array, count * 2 );
+
+    array[count] = value;
+    return array;
+  }
+
+  /******************************************* remove ********************************************/
+  private static boolean remove( int[] array, int count, int value )
+  {
+    // remove one occurrence of value by moving last value into its place, true if found
+    for ( int i = 0; i < count; i++ )
+      if ( array[i] == value )
+      {
+        array[i] = array[count - 1];
+        return true;
+      }
+
+    return false;
+  }
+
+  /******************************************* reorder *******************************************/
+  private void reorder( int from, int to )
+  {
+    // restore topological ranks after adding edge against them (Pearce-Kelly algorithm), only
+    // nodes ranked between the two ends of the new edge are searched and re-ranked
+    int[] forward = search( to, m_rank[from], true );
+    if ( forward == null )
+    {
+      JPlanner.trace( "Circular dependency added from node " + from + " to " + to );
+      m_circular = true;
+      return;
+    }
+    int[] backward = search( from, m_rank[to], false );
+
+    // nodes reaching 'from' take the lowest of the ranks used, followed by nodes reached from 'to'
+    sortByRank( forward );
+    sortByRank( backward );
+    int[] ranks = new int[forward.length + backward.length];
+    for ( int i = 0; i < backward.length; i++ )
+      ranks[i] = m_rank[backward[i]];
+    for ( int i = 0; i < forward.length; i++ )
+      ranks[backward.length + i] = m_rank[forward[i]];
+    Arrays.sort( ranks );
+
+    for ( int i = 0; i < backward.length; i++ )
+      m_rank[backward[i]] = ranks[i];
+    for ( int i = 0; i < forward.length; i++ )
+      m_rank[forward[i]] = ranks[backward.length + i];
+  }
+
+  /******************************************* search ********************************************/
+  private int[] search( int start, int bound, boolean forward )
+  {
+    // return nodes found searching forward below rank bound or backward above rank bound,
+    // or null if searching forward reaches node at rank bound (i.e. a cycle)
+    BitSet visited = new BitSet();
+    int[] stack = new int[16];
+    int depth = 0;
+    int[] found = new int[16];
+    int count = 0;
+
+    visited.set( start );
+    stack[depth++] = start;
+    while ( depth > 0 )
+    {
+      int node = stack[--depth];
+      found = append( found, count++, node );
+
+      int[] adjacent = forward ? m_succ[node] : m_pred[node];
+      int num = forward ? m_succNum[node] : m_predNum[node];
+      for ( int a = 0; a < num; a++ )
+      {
+        int other = adjacent[a];
+        if ( forward && m_rank[other] == bound )
+          return null;
+        if ( visited.get( other ) || ( forward ? m_rank[other] > bound : m_rank[other] < bound ) )
+          continue;
+
+        visited.set( other );
+        stack = append( stack, depth++, other );
+      }
+    }
+
+    return Arrays.copyOf( found, count );
+  }
+
+  /***************************************** sortByRank ******************************************/
+  private void sortByRank( int[] nodes )
+  {
+    // sort nodes into rank order
+    long[] keys = new long[nodes.length];
+    for ( int i = 0; i < nodes.length; i++ )
+      keys[i] = ( (long) m_rank[nodes[i]] << 32 ) | nodes[i];
+    Arrays.sort( keys );
+    for ( int i = 0; i < nodes.length; i++ )
+      nodes[i] = (int) keys[i];
+  }
+
+  /******************************************* reaches *******************************************/
+  private boolean reaches( int from, int to )
+  {
+    // return true if path exists between nodes, as a node ranked after another cannot reach it
+    // only nodes ranked between the two need searching, unless graph circular so ranks unreliable
+    if ( from == to )
+      return true;
+    int bound = m_circular ? Integer.MAX_VALUE : m_rank[to];
+    if ( m_rank[from] > bound )
+      return false;
+
+    BitSet visited = new BitSet();
+    int[] stack = new int[16];
+    int depth = 0;
+    visited.set( from );
+    stack[depth++] = from;
+    while ( depth > 0 )
+    {
+      int node = stack[--depth];
+      for ( int s = 0; s < m_succNum[node]; s++ )
+      {
+        int succ = m_succ[node][s];
+        if ( succ == to )
+          return true;
+        if ( visited.get( succ ) || m_rank[succ] > bound )
+          continue;
+
+        visited.set( succ );
+        stack = append( stack, depth++, succ );
+      }
+    }
+
+    return false;
+  }
+
+  /***************************************** isUpstream ******************************************/
+  public boolean isUpstream( Task before, Task after )
+  {
+    // return true if 'after' cannot finish until 'before' finished, via predecessors or summaries
+    int from = m_tasks.indexOf( before );
+    int to = m_tasks.indexOf( after );
+    if ( from < 0 || to < 0 || from == to || !m_active[from] || !m_active[to] )
+      return false;
+
+    return reaches( from, to );
+  }
+
+  /*************************************** wouldBeCircular ***************************************/
+  public boolean wouldBeCircular( Task pred, Task task )
+  {
+    // return true if making 'pred' a predecessor of 'task' would create a circular dependency
+    int from = m_tasks.indexOf( task );
+    int to = m_tasks.indexOf( pred );
+    if ( from < 0 || to < 0 || !m_active[from] || !m_active[to] )
+      return false;
+
+    return reaches( entry( from ), to );
+  }
+
+  /************************************** topologicalOrder ***************************************/
+  private int[] topologicalOrder()
+  {
+    // ready tasks are ordered by priority (highest first) and then by index
+    PriorityQueue<Integer> ready = new PriorityQueue<Integer>( ( task1, task2 ) ->
+    {
+      if ( m_priority[task1] != m_priority[task2] )
+        return m_priority[task2] - m_priority[task1];
+      return task1 - task2;
+    } );
+
+    // summary entry nodes have no scheduling of their own, so are released immediately
+    int[] waiting = Arrays.copyOf( m_predNum, m_predNum.length );
+    int[] entries = new int[m_size];
+    int entryCount = 0;
+    int taskCount = 0;
+    for ( int node = 0; node < 2 * m_size; node++ )
+      if ( m_active[node] )
+      {
+        if ( node < m_size )
+          taskCount++;
+        if ( waiting[node] == 0 )
+        {
+          if ( node < m_size )
+            ready.add( node );
+          else
+            entries[entryCount++] = node;
+        }
+      }
+
+    // each node is visited once, each edge is followed once, and nodes ranked in order visited
+    BitSet ranked = new BitSet( 2 * m_size );
+    int rank = 0;
+    int[] order = new int[taskCount];
+    int count = 0;
+    while ( true )
+    {
+      int node;
+      if ( entryCount > 0 )
+        node = entries[--entryCount];
+      else if ( !ready.isEmpty() )
+      {
+        node = ready.poll();
+        order[count++] = node;
+      }
+      else
+        break;
+
+      ranked.set( node );
+      m_rank[node] = rank++;
+      for ( int s = 0; s < m_succNum[node]; s++ )
+      {
+        int succ = m_succ[node][s];
+        if ( --waiting[succ] == 0 )
+        {
+          if ( succ < m_size )
+            ready.add( succ );
+          else
+            entries[entryCount++] = succ;
+        }
+      }
+    }
+
+    // any tasks not reached are in a circular dependency, so append in index order
+    m_circular = count < taskCount;
+    if ( m_circular )
+    {
+      JPlanner.trace( "Circular dependency between " + ( taskCount - count ) + " tasks" );
+      for ( int task = 0; task < m_size; task++ )
+        if ( m_active[task] && !ranked.get( task ) )
+          order[count++] = task;
+    }
+
+    // remaining nodes (unused or circular) ranked last
+    for ( int node = 0; node < 2 * m_size; node++ )
+      if ( !ranked.get( node ) )
+        m_rank[node] = rank++;
+    m_ranked = true;
+
+    return order;
+  }
+
+  /****************************************** getOrder *******************************************/
+  public int[] getOrder()
+  {
+    // return non-null task indexes in scheduling order
+    if ( m_order == null )
+    {
+      m_order = topologicalOrder();
+      m_position = new int[m_size];
+      Arrays.fill( m_position, -1 );
+      for ( int pos = 0; pos < m_order.length; pos++ )
+        m_position[m_order[pos]] = pos;
+    }
+
+    return m_order;
+  }
+
+  /**************************************** getNodeOrder *****************************************/
+  public int[] getNodeOrder()
+  {
+    // return used nodes (task exits and summary entries) in topological order, by inverting ranks
+    getOrder();
+    int[] byRank = new int[2 * m_size];
+    for ( int node = 0; node < 2 * m_size; node++ )
+      byRank[m_rank[node]] = node;
+
+    int[] nodes = new int[2 * m_size];
+    int count = 0;
+    for ( int node : byRank )
+      if ( m_active[node] )
+        nodes[count++] = node;
+
+    return Arrays.copyOf( nodes, count );
+  }
+
+  /*************************************** firstDifference ***************************************/
+  public static int firstDifference( int[] order1, int[] order2 )
+  {
+    // return first position where scheduling orders differ
+    if ( order1 == null || order2 == null )
+      return 0;
+
+    int length = Math.min( order1.length, order2.length );
+    for ( int pos = 0; pos < length; pos++ )
+      if ( order1[pos] != order2[pos] )
+        return pos;
+
+    return length;
+  }
+
+  /***************************************** getAffected *****************************************/
+  public int[] getAffected( Set<Task> changed, int from )
+  {
+    // return in scheduling order the changed tasks and all tasks depending on them, plus because
+    // resources are allocated in scheduling order, every task using resources after the specified
+    // position and every later task sharing a resource with an affected task
+    getOrder();
+    PriorityQueue<Integer> queue = new PriorityQueue<Integer>();
+    BitSet queued = new BitSet();
+    BitSet visited = new BitSet();
+    HashSet<Resource> swept = new HashSet<Resource>();
+
+    for ( Task task : changed )
+    {
+      int index = m_tasks.indexOf( task );
+      if ( index < 0 || m_position[index] < 0 )
+        continue;
+
+      enqueue( index, queue, queued );
+      if ( m_active[m_size + index] )
+        enqueueSuccessors( m_size + index, queue, queued, visited );
+    }
+
+    for ( int pos = from; pos < m_order.length; pos++ )
+      if ( !m_tasks.get( m_order[pos] ).getResources().isEmpty() )
+        enqueue( m_order[pos], queue, queued );
+
+    // pop in scheduling order, adding successors and later tasks sharing resources until no more
+    int[] affected = new int[16];
+    int count = 0;
+    while ( !queue.isEmpty() )
+    {
+      int pos = queue.poll();
+      int index = m_order[pos];
+      if ( count == affected.length )
+        affected = Arrays.copyOf( affected, count * 2 );
+      affected[count++] = index;
+
+      if ( pos < from )
+        sweepResources( index, queue, queued, swept );
+      enqueueSuccessors( index, queue, queued, visited );
+    }
+
+    return Arrays.copyOf( affected, count );
+  }
+
+  /******************************************* enqueue *******************************************/
+  private void enqueue( int index, PriorityQueue<Integer> queue, BitSet queued )
+  {
+    // add task position to queue if not already added
+    int pos = m_position[index];
+    if ( !queued.get( pos ) )
+    {
+      queued.set( pos );
+      queue.add( pos );
+    }
+  }
+
+  /************************************** enqueueSuccessors **************************************/
+  private void enqueueSuccessors( int node, PriorityQueue<Integer> queue, BitSet queued, BitSet visited )
+  {
+    // add tasks following node to queue, passing through summary entry nodes
+    for ( int s = 0; s < m_succNum[node]; s++ )
+    {
+      int succ = m_succ[node][s];
+      if ( succ < m_size )
+        enqueue( succ, queue, queued );
+      else if ( !visited.get( succ ) )
+      {
+        visited.set( succ );
+        enqueueSuccessors( succ, queue, queued, visited );
+      }
+    }
+  }
+
+  /*************************************** sweepResources ****************************************/
+  private void sweepResources( int index, PriorityQueue<Integer> queue, BitSet queued, HashSet<Resource> swept )
+  {
+    // add tasks after task that are assigned any resource the task is assigned or used in last schedule,
+    // as tasks are popped in scheduling order each resource only needs sweeping from its first task
+    Task task = m_tasks.get( index );
+    HashSet<Resource> resources = new HashSet<Resource>();
+    for ( String tag : task.getResources().getTags() )
+      resources.addAll( JPlanner.plan.resources.getResourceList( tag ) );
+    Work.Cursor cursor = JPlanner.plan.work.cursor( task );
+    while ( cursor.next() )
+      resources.add( cursor.getResource() );
+
+    int pos = m_position[index];
+    for ( Resource resource : resources )
+      if ( swept.add( resource ) )
+        for ( String tag : resource.getTags() )
+          if ( tag != null )
+            for ( Task other : m_tasks.getTagTasks( tag ) )
+            {
+              int otherIndex = m_tasks.indexOf( other );
+              if ( otherIndex >= 0 && otherIndex < m_size && m_position[otherIndex] > pos )
+                enqueue( otherIndex, queue, queued );
+            }
+  }
+
+}
@@ -20,9 +20,12 @@ package rjc.jplanner.model;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 import rjc.jplanner.JPlanner;
-import rjc.jplanner.model.Work.DateTimeNumber;
 
 /*************************************************************************************************/
 /************************* Resources assigned to single task within plan *************************/
@@ -30,92 +33,141 @@ import rjc.jplanner.model.Work.DateTimeNumber;
 
 public class TaskResources
 {
-  // structure that contains one task resource assignment
-  private class Assignment
+  // private inner class defining assignment maximum formatting
+  private static final class MaxFormat extends DecimalFormat
   {
-    public String tag; // initials or name or org or group or alias or role etc
-    public float  max; // 0 (zero) means unlimited
+    private static final long serialVersionUID = 1L;
 
-    @Override
-    public boolean equals( Object obj )
+    public MaxFormat()
     {
-      if ( this == obj )
-        return true;
-      if ( obj == null )
-        return false;
-      if ( !( obj instanceof Assignment ) )
-        return false;
-      Assignment other = (Assignment) obj;
-      if ( Float.floatToIntBits( max ) != Float.floatToIntBits( other.max ) )
-        return false;
-      if ( !tag.equals( other.tag ) )
-        return false;
-      return true;
+      applyPattern( "0" );
+      setMaximumFractionDigits( 4 );
     }
+  }
 
-    @Override
-    public String toString()
-    {
-      return "'" + tag + "' " + max;
-    }
+  // private inner class holding an assigned resource's capacity when integrating work over time
+  private static final class Capacity
+  {
+    Resource      resource;
+    Calendar      calendar;
+    UsageTimeline timeline; // usage by efforts already scheduled, null if none
+    double        num;      // maximum number of resource assigned to task
+    double        rate;     // number of resource free for task in current segment
   }
 
-  ArrayList<Assignment> m_assignments; // list of resource assignments
+  private static final double                 TOLERANCE = 1e-9;
+  private static final long                   MIN_MS    = DateTime.MIN_VALUE.getMilliseconds();
+  private static final long                   MAX_MS    = DateTime.MAX_VALUE.getMilliseconds();
+
+  private static final ThreadLocal<MaxFormat> FORMAT    = ThreadLocal.withInitial( MaxFormat::new );
+
+  private int[]   m_tagIds; // plan tag id of each resource assignment
+  private float[] m_max;    // max of each resource assignment, 0 (zero) means unlimited
 
   /**************************************** constructor ******************************************/
   public TaskResources()
   {
     // empty assignment list
-    m_assignments = new ArrayList<Assignment>();
+    m_tagIds = new int[0];
+    m_max = new float[0];
   }
 
   /**************************************** constructor ******************************************/
   public TaskResources( String text )
   {
-    // split text into individual assignments
-    m_assignments = new ArrayList<Assignment>();
-    String tag;
-    String max;
-    for ( String part : text.split( "," ) )
+    // split text into individual assignments, size arrays for largest possible number of assignments
+    int parts = 1;
+    for ( int pos = 0; pos < text.length(); pos++ )
+      if ( text.charAt( pos ) == ',' )
+        parts++;
+    m_tagIds = new int[parts];
+    m_max = new float[parts];
+
+    int count = 0;
+    int start = 0;
+    while ( start <= text.length() )
     {
-      // split part into tag and max assignment
-      part = JPlanner.clean( part );
+      int end = text.indexOf( ',', start );
+      if ( end < 0 )
+        end = text.length();
+      String part = clean( text, start, end );
+      start = end + 1;
       if ( part.isEmpty() )
         continue;
+
+      // split part into tag and max assignment
+      String tag = part;
+      float max = 0.0f;
       int bracket = part.indexOf( '[' );
       if ( bracket >= 0 )
       {
         tag = part.substring( 0, bracket ).trim();
-        max = part.substring( bracket + 1 ).replaceAll( "]", "" ).trim();
-      }
-      else
-      {
-        tag = part;
-        max = "0";
+        max = Float.parseFloat( part.substring( bracket + 1 ).replace( "]", "" ).trim() );
       }
 
-      Assignment assignment = new Assignment();
-      assignment.tag = tag;
-      assignment.max = Float.parseFloat( max );
-      m_assignments.add( assignment );
+      m_tagIds[count] = JPlanner.plan.resources.getTagId( tag );
+      m_max[count++] = max;
     }
+
+    // trim arrays to number of assignments found
+    m_tagIds = Arrays.copyOf( m_tagIds, count );
+    m_max = Arrays.copyOf( m_max, count );
   }
 
   /**************************************** constructor ******************************************/
   public TaskResources( TaskResources tr, String oldTag, String newTag )
   {
-    // replace old tag with new tag
-    m_assignments = new ArrayList<Assignment>();
-    tr.m_assignments.forEach( oldAssignment ->
+    // replace old tag with new tag, dropping assignments if new tag is null
+    Resources resources = JPlanner.plan.resources;
+    Integer oldId = resources.getTagIdIfUsed( oldTag );
+    int newId = newTag == null ? -1 : resources.getTagId( newTag );
+    m_tagIds = new int[tr.m_tagIds.length];
+    m_max = new float[tr.m_max.length];
+
+    int count = 0;
+    for ( int index = 0; index < tr.m_tagIds.length; index++ )
+    {
+      int id = tr.m_tagIds[index];
+      if ( oldId != null && id == oldId )
+        id = newId;
+
+      if ( id >= 0 )
+      {
+        m_tagIds[count] = id;
+        m_max[count++] = tr.m_max[index];
+      }
+    }
+
+    m_tagIds = Arrays.copyOf( m_tagIds, count );
+    m_max = Arrays.copyOf( m_max, count );
+  }
+
+  /******************************************** clean ********************************************/
+  private static String clean( String text, int start, int end )
+  {
+    // return text between start and end cleaned the same as JPlanner.clean but without regular expression
+    while ( start < end && text.charAt( start ) <= ' ' )
+      start++;
+    while ( end > start && text.charAt( end - 1 ) <= ' ' )
+      end--;
+
+    StringBuilder str = new StringBuilder( end - start );
+    boolean space = false;
+    for ( int pos = start; pos < end; pos++ )
     {
-      Assignment newAssignment = new Assignment();
-      newAssignment.tag = oldAssignment.tag.equals( oldTag ) ? newTag : oldAssignment.tag;
-      newAssignment.max = oldAssignment.max;
-
-      // only add new assignment if tag not null, can happen if newTag is null
-      if ( newAssignment.tag != null )
-        m_assignments.add( newAssignment );
-    } );
+      char ch = text.charAt( pos );
+      if ( " \t\n\u000B\f\r".indexOf( ch ) >= 0 )
+        space = true;
+      else
+      {
+        if ( space )
+          str.append( ' ' );
+        str.append( ch );
+        space = false;
+      }
+    }
+
+    return str.toString();
   }
 
   /***************************************** toString ********************************************/
@@ -123,21 +175,18 @@ public class TaskResources
   public String toString()
   {
     // if no assignments, return empty string
-    if ( m_assignments.isEmpty() )
+    if ( m_tagIds.length == 0 )
       return "";
 
-    StringBuilder str = new StringBuilder();
-    DecimalFormat df = new DecimalFormat( "0" );
-    df.setMaximumFractionDigits( 4 );
-
     // build up string equivalent
-    for ( Assignment assignment : m_assignments )
+    StringBuilder str = new StringBuilder();
+    for ( int index = 0; index < m_tagIds.length; index++ )
     {
-      str.append( assignment.tag );
-      if ( assignment.max > 0.0 )
+      str.append( JPlanner.plan.resources.getTag( m_tagIds[index] ) );
+      if ( m_max[index] > 0.0 )
       {
         str.append( '[' );
-        str.append( df.format( assignment.max ) );
+        str.append( FORMAT.get().format( m_max[index] ) );
         str.append( ']' );
       }
       str.append( ", " );
@@ -195,13 +244,26 @@ public class TaskResources
     return error.toString();
   }
 
+  /******************************************* getTags *******************************************/
+  public HashSet<String> getTags()
+  {
+    // return set of tags used by resource assignments
+    HashSet<String> tags = new HashSet<String>();
+    for ( int id : m_tagIds )
+      tags.add( JPlanner.plan.resources.getTag( id ) );
+
+    return tags;
+  }
+
   /***************************************** containsTag *****************************************/
   public boolean containsTag( String tag )
   {
     // return true if resources assigned to task includes this tag
-    for ( Assignment assignment : m_assignments )
-      if ( assignment.tag.equals( tag ) )
-        return true;
+    Integer id = JPlanner.plan.resources.getTagIdIfUsed( tag );
+    if ( id != null )
+      for ( int tagId : m_tagIds )
+        if ( tagId == id )
+          return true;
 
     return false;
   }
@@ -212,14 +274,14 @@ public class TaskResources
   {
     if ( this == obj )
       return true;
-    if ( obj == null && m_assignments.isEmpty() )
+    if ( obj == null && m_tagIds.length == 0 )
       return true;
     if ( obj == null )
       return false;
     if ( !( obj instanceof TaskResources ) )
       return false;
     TaskResources other = (TaskResources) obj;
-    if ( !m_assignments.equals( other.m_assignments ) )
+    if ( !Arrays.equals( m_tagIds, other.m_tagIds ) || !Arrays.equals( m_max, other.m_max ) )
       return false;
     return true;
   }
@@ -228,51 +290,275 @@ public class TaskResources
   public boolean isEmpty()
   {
     // returns true if no resource assignments
-    return m_assignments.isEmpty();
+    return m_tagIds.length == 0;
   }
 
   /******************************************** assign *******************************************/
-  public void assign( Task task )
+  public void assign( Task task, DateTime start, DateTime end, Work work )
   {
     // if task is milestone (i.e. with zero duration) then don't assign
-    if ( task.isMilestone() )
+    if ( start.getMilliseconds() == end.getMilliseconds() )
       return;
 
     // add assigned resources to work for this task
-    for ( Assignment assignment : m_assignments )
+    Resources resources = JPlanner.plan.resources;
+    for ( int index = 0; index < m_tagIds.length; index++ )
     {
-      ArrayList<Resource> resourceList = JPlanner.plan.resources.getResourceList( assignment.tag );
+      List<Resource> resourceList = resources.getTagResources( m_tagIds[index] );
       for ( Resource resource : resourceList )
       {
-        float num = assignment.max == 0.0f ? Float.MAX_VALUE : assignment.max;
-        JPlanner.plan.work.add( task, resource, num, task.getStart(), task.getEnd() );
+        float num = m_max[index] == 0.0f ? Float.MAX_VALUE : m_max[index];
+        work.add( task, resource, num, start, end );
       }
     }
   }
 
-  /************************************* getPotentialWorkDone ************************************/
-  public double getPotentialWorkDone( DateTime start, DateTime end )
+  /****************************************** whenFree *******************************************/
+  public long whenFree( long startMS, long endMS, Work work )
   {
-    // TODO Auto-generated method stub
-    JPlanner.trace( "### getPotentialWorkDone ", start, end );
+    // return earliest time from start after which every assigned resource is free until end
+    long free = startMS;
+    Resources resources = JPlanner.plan.resources;
+    for ( int index = 0; index < m_tagIds.length; index++ )
+      for ( Resource resource : resources.getTagResources( m_tagIds[index] ) )
+      {
+        double num = m_max[index] == 0.0f ? Double.POSITIVE_INFINITY : m_max[index];
+        free = Math.max( free, work.whenFree( resource, startMS, endMS, num ) );
+      }
+
+    return free;
+  }
+
+  /*************************************** getCapacities *****************************************/
+  private ArrayList<Capacity> getCapacities( Work work )
+  {
+    // return capacity of each different resource assigned, combining assignments of same resource
+    ArrayList<Capacity> capacities = new ArrayList<>();
+    HashMap<Resource, Capacity> lookup = new HashMap<>();
+    Resources resources = JPlanner.plan.resources;
+    for ( int index = 0; index < m_tagIds.length; index++ )
+      for ( Resource resource : resources.getTagResources( m_tagIds[index] ) )
+      {
+        if ( resource.getAvailable() <= 0.0 )
+          continue;
+
+        Capacity capacity = lookup.get( resource );
+        if ( capacity == null )
+        {
+          capacity = new Capacity();
+          capacity.resource = resource;
+          capacity.calendar = resource.getCalendar();
+          capacity.timeline = work.getTimeline( resource );
+          lookup.put( resource, capacity );
+          capacities.add( capacity );
+        }
+        capacity.num += m_max[index] == 0.0f ? Double.POSITIVE_INFINITY : m_max[index];
+      }
 
-    // for each assignment to task
-    for ( Assignment assignment : m_assignments )
+    return capacities;
+  }
+
+  /****************************************** setRates *******************************************/
+  private static double setRates( ArrayList<Capacity> capacities, long ms )
+  {
+    // set number of each resource free for task from specified milliseconds, and return total
+    double total = 0.0;
+    for ( Capacity capacity : capacities )
     {
-      // for each resource
-      ArrayList<Resource> resourceList = JPlanner.plan.resources.getResourceList( assignment.tag );
-      for ( Resource resource : resourceList )
+      double used = capacity.timeline == null ? 0.0 : capacity.timeline.getUsage( ms );
+      capacity.rate = Math.max( Math.min( capacity.num, capacity.resource.getAvailable( ms ) - used ), 0.0 );
+      total += capacity.rate;
+    }
+
+    return total;
+  }
+
+  /****************************************** nextChange *****************************************/
+  private static long nextChange( ArrayList<Capacity> capacities, long ms )
+  {
+    // return milliseconds when any resource capacity next changes after specified milliseconds
+    long change = MAX_MS;
+    for ( Capacity capacity : capacities )
+    {
+      if ( capacity.timeline != null )
+        change = Math.min( change, capacity.timeline.getNextChange( ms ) );
+      change = Math.min( change, capacity.resource.getAvailableChange( ms ) );
+    }
+
+    return Math.max( change, ms );
+  }
+
+  /**************************************** previousChange ***************************************/
+  private static long previousChange( ArrayList<Capacity> capacities, long ms )
+  {
+    // return milliseconds when any resource capacity last changed before specified milliseconds
+    long change = MIN_MS;
+    for ( Capacity capacity : capacities )
+    {
+      if ( capacity.timeline != null )
+        change = Math.max( change, capacity.timeline.getPreviousChange( ms ) );
+      change = Math.max( change, capacity.resource.getAvailablePrevious( ms ) );
+    }
+
+    return Math.min( change, ms );
+  }
+
+  /***************************************** segmentWork *****************************************/
+  private static double segmentWork( ArrayList<Capacity> capacities, long startMS, long endMS )
+  {
+    // return work-days done between start and end at the rates set for the segment
+    double work = 0.0;
+    for ( Capacity capacity : capacities )
+      if ( capacity.rate > 0.0 )
+        work += capacity.rate * capacity.calendar.workBetweenMS( startMS, endMS );
+
+    return work;
+  }
+
+  /**************************************** solveSegment *****************************************/
+  private static long solveSegment( ArrayList<Capacity> capacities, long startMS, long endMS, double work,
+      boolean forward )
+  {
+    // return when work-days are done within segment, measured from segment start if forward else from end
+    Calendar shared = null;
+    boolean single = true;
+    double rate = 0.0;
+    for ( Capacity capacity : capacities )
+      if ( capacity.rate > 0.0 )
+      {
+        if ( shared == null )
+          shared = capacity.calendar;
+        else if ( shared != capacity.calendar )
+          single = false;
+        rate += capacity.rate;
+      }
+
+    // if all resources doing work share a calendar, move directly by work-days at combined rate
+    if ( single )
+    {
+      if ( forward )
+        return Math.min( shared.getWorkDateTimeDownMS( shared.workTimeSpanMS( startMS, work / rate,
+            TimeSpan.UNIT_DAYS ) ), endMS );
+      return Math.max( shared.getWorkDateTimeUpMS( shared.workTimeSpanMS( endMS, -work / rate,
+          TimeSpan.UNIT_DAYS ) ), startMS );
+    }
+
+    // otherwise binary search segment for the millisecond when work done reaches required
+    long low = startMS;
+    long high = endMS;
+    while ( high - low > 1 )
+    {
+      long mid = low + ( high - low ) / 2;
+      if ( forward == segmentWork( capacities, forward ? startMS : mid, forward ? mid : endMS ) < work )
+        low = mid;
+      else
+        high = mid;
+    }
+
+    return forward ? high : low;
+  }
+
+  /***************************************** getWorkEndMS ****************************************/
+  public long getWorkEndMS( long startMS, double days, Work work )
+  {
+    // return when assigned resources complete work-days beginning at start, stepping from one
+    // capacity change point to the next so each segment is a few calendar look-ups however long
+    ArrayList<Capacity> capacities = getCapacities( work );
+    long segmentStart = startMS;
+    while ( days > TOLERANCE )
+    {
+      long segmentEnd = nextChange( capacities, segmentStart );
+      double done = setRates( capacities, segmentStart ) > 0.0
+          ? segmentWork( capacities, segmentStart, segmentEnd ) : 0.0;
+      if ( done >= days - TOLERANCE )
+        return solveSegment( capacities, segmentStart, segmentEnd, days, true );
+
+      // if resources never have enough capacity, use plan calendar as if single resource assigned
+      if ( segmentEnd >= MAX_MS )
       {
-        float num = assignment.max == 0.0f ? Float.MAX_VALUE : assignment.max;
+        if ( !capacities.isEmpty() )
+          JPlanner.trace( "Insufficient resource capacity " + this + " using plan calendar" );
+        Calendar planCal = JPlanner.plan.getDefaultCalendar();
+        return planCal.getWorkDateTimeDownMS( planCal.workTimeSpanMS( startMS, days, TimeSpan.UNIT_DAYS ) );
+      }
 
-        // DO SOMETHING !!!!
-        JPlanner.trace( resource, num, this );
-        DateTimeNumber usage = JPlanner.plan.work.getResourceUsage( resource, start );
+      days -= done;
+      segmentStart = segmentEnd;
+    }
+
+    return segmentStart;
+  }
 
+  /**************************************** getWorkStartMS ***************************************/
+  public long getWorkStartMS( long endMS, double days, Work work )
+  {
+    // return when assigned resources must start to complete work-days by end, stepping backwards
+    ArrayList<Capacity> capacities = getCapacities( work );
+    long segmentEnd = endMS;
+    while ( days > TOLERANCE )
+    {
+      long segmentStart = previousChange( capacities, segmentEnd );
+      double done = setRates( capacities, segmentStart ) > 0.0
+          ? segmentWork( capacities, segmentStart, segmentEnd ) : 0.0;
+      if ( done >= days - TOLERANCE )
+        return solveSegment( capacities, segmentStart, segmentEnd, days, false );
+
+      // if resources never have enough capacity, use plan calendar as if single resource assigned
+      if ( segmentStart <= MIN_MS )
+      {
+        if ( !capacities.isEmpty() )
+          JPlanner.trace( "Insufficient resource capacity " + this + " using plan calendar" );
+        Calendar planCal = JPlanner.plan.getDefaultCalendar();
+        return planCal.getWorkDateTimeUpMS( planCal.workTimeSpanMS( endMS, -days, TimeSpan.UNIT_DAYS ) );
       }
+
+      days -= done;
+      segmentEnd = segmentStart;
     }
 
-    return 0.0;
+    return segmentEnd;
+  }
+
+  /************************************* getPotentialWorkDone ************************************/
+  public double getPotentialWorkDone( DateTime start, DateTime end )
+  {
+    // return work-days assigned resources could do between start and end with capacity not already used
+    ArrayList<Capacity> capacities = getCapacities( JPlanner.plan.work );
+    long endMS = end.getMilliseconds();
+    double work = 0.0;
+    for ( long ms = start.getMilliseconds(); ms < endMS; )
+    {
+      long change = Math.min( nextChange( capacities, ms ), endMS );
+      if ( setRates( capacities, ms ) > 0.0 )
+        work += segmentWork( capacities, ms, change );
+      ms = change;
+    }
+
+    return work;
+  }
+
+  /****************************************** assignWork *****************************************/
+  public void assignWork( Task task, long startMS, long endMS, Work work )
+  {
+    // if task is milestone (i.e. with zero duration) then don't assign
+    if ( startMS == endMS )
+      return;
+
+    // add efforts using the resource capacity free in each segment between task start & end
+    ArrayList<Capacity> capacities = getCapacities( work );
+    for ( long ms = startMS; ms < endMS; )
+    {
+      long change = Math.min( nextChange( capacities, ms ), endMS );
+      if ( setRates( capacities, ms ) > 0.0 )
+      {
+        DateTime start = new DateTime( ms );
+        DateTime finish = new DateTime( change );
+        for ( Capacity capacity : capacities )
+          if ( capacity.rate > 0.0 )
+            work.add( task, capacity.resource, capacity.rate, start, finish );
+      }
+      ms = change;
+    }
   }
 
 }
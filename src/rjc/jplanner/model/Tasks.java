@@ -19,11 +19,12 @@
 package rjc.jplanner.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -36,9 +37,18 @@ import rjc.jplanner.XmlLabels;
 /**************************** Holds the complete list of plan tasks ******************************/
 /*************************************************************************************************/
 
-public class Tasks extends ArrayList<Task>
+public class Tasks extends IndexedList<Task>
 {
-  private static final long serialVersionUID = 1L;
+  private static final long              serialVersionUID = 1L;
+
+  private TaskGraph                      m_graph;                              // dependency graph of tasks
+  private int[]                          m_order;                              // scheduling order used by last schedule
+  private boolean                        m_allChanged   = true;                // true if every task needs rescheduling
+  private HashSet<Task>                  m_changed      = new HashSet<Task>(); // tasks changed since last schedule
+  private HashSet<Task>                  m_graphChanged = new HashSet<Task>(); // tasks needing graph updating
+  private HashMap<String, HashSet<Task>> m_tagTasks;                           // tasks using each resource tag, or null
+  private CriticalPath                   m_critical;                           // critical path of last schedule, or null
+  private RiskSimulation.Result          m_risk;                               // risk simulation of last schedule, or null
 
   public class PredecessorsList extends TreeMap<Integer, String>
   {
@@ -175,14 +185,191 @@ public class Tasks extends ArrayList<Task>
   /****************************************** schedule *******************************************/
   public void schedule()
   {
-    // first construct set of tasks in correct order
-    TreeSet<Task> scheduleList = new TreeSet<Task>();
-    for ( Task task : this )
-      if ( !task.isNull() )
-        scheduleList.add( task );
+    // schedule plan on this thread
+    Scheduling scheduling = prepareSchedule();
+    scheduling.run();
+    publishSchedule( scheduling );
+  }
+
+  /*************************************** prepareSchedule ***************************************/
+  public Scheduling prepareSchedule()
+  {
+    // get scheduling order from dependency graph
+    TaskGraph graph = getGraph();
+    int[] order = graph.getOrder();
+
+    // build indexes that would otherwise be built on first use, as they are shared between threads
+    for ( Calendar calendar : JPlanner.plan.calendars )
+      calendar.prepareIndex();
+    JPlanner.plan.resources.prepareIndex();
+
+    // if everything changed, schedule every task in order into empty work
+    Scheduling scheduling;
+    if ( m_allChanged )
+    {
+      Task[] tasks = new Task[order.length];
+      for ( int pos = 0; pos < order.length; pos++ )
+        tasks[pos] = get( order[pos] );
+      scheduling = new Scheduling( order, tasks, new Work(), null, true, m_changed );
+    }
+    else
+    {
+      // otherwise only reschedule changed tasks and those affected by them, into copy of plan work
+      int from = TaskGraph.firstDifference( m_order, order );
+      int[] affected = graph.getAffected( m_changed, from );
+      Task[] tasks = new Task[affected.length];
+      for ( int pos = 0; pos < affected.length; pos++ )
+        tasks[pos] = get( affected[pos] );
+
+      JPlanner.trace( "Rescheduling " + affected.length + " of " + order.length + " tasks" );
+
+      // tasks which have become null are not scheduled, but their old efforts still need removing
+      Set<Task> cleared = new HashSet<Task>( Arrays.asList( tasks ) );
+      for ( Task task : m_changed )
+        if ( task.isNull() )
+          cleared.add( task );
+      scheduling = new Scheduling( order, tasks, JPlanner.plan.work, cleared, false, m_changed );
+    }
+
+    // changes from now on are for the next schedule
+    m_changed = new HashSet<Task>();
+    m_allChanged = false;
+    return scheduling;
+  }
+
+  /*************************************** publishSchedule ***************************************/
+  public void publishSchedule( Scheduling scheduling )
+  {
+    // make completed schedule's work the plan work, and its dates and gantt data those of its tasks
+    JPlanner.plan.work = scheduling.getWork();
+    for ( Task task : scheduling.getTasks() )
+      task.setSchedule( scheduling.getStart( task ), scheduling.getEnd( task ), scheduling.getGantt( task ) );
+
+    m_order = scheduling.getOrder();
+    m_critical = null;
+    m_risk = null;
+  }
+
+  /*************************************** abandonSchedule ***************************************/
+  public void abandonSchedule( Scheduling scheduling )
+  {
+    // schedule not completed so its tasks still need scheduling, its dates and work are just dropped
+    m_changed.addAll( scheduling.getChanged() );
+    m_changed.addAll( Arrays.asList( scheduling.getTasks() ) );
+    if ( scheduling.isAll() )
+      m_allChanged = true;
+
+    // the plan has changed since critical path and risk were found from the last schedule
+    m_critical = null;
+    m_risk = null;
+  }
+
+  /*************************************** getCriticalPath ***************************************/
+  public CriticalPath getCriticalPath()
+  {
+    // return critical path analysis of current schedule, analysing only when rescheduled
+    if ( m_critical == null )
+      m_critical = new CriticalPath( this );
 
-    // schedule tasks in this order
-    scheduleList.forEach( task -> task.schedule() );
+    return m_critical;
+  }
+
+  /******************************************* setRisk *******************************************/
+  public void setRisk( RiskSimulation.Result risk )
+  {
+    // set risk simulation results for current schedule
+    m_risk = risk;
+  }
+
+  /*************************************** getCriticality ****************************************/
+  public String getCriticality( Task task )
+  {
+    // return percentage of risk simulation passes task was critical, or null if not simulated
+    if ( m_risk == null || Double.isNaN( m_risk.getCriticality( task ) ) )
+      return null;
+
+    return Math.round( 100.0 * m_risk.getCriticality( task ) ) + "%";
+  }
+
+  /****************************************** getGraph *******************************************/
+  public TaskGraph getGraph()
+  {
+    // return dependency graph, first bringing it up to date with any changes
+    if ( m_graph == null || m_graph.getSize() != size() )
+    {
+      m_graph = new TaskGraph( this );
+      m_graphChanged.clear();
+    }
+    else if ( !m_graphChanged.isEmpty() )
+    {
+      m_graph.update( m_graphChanged );
+      m_graphChanged.clear();
+    }
+
+    return m_graph;
+  }
+
+  /***************************************** markChanged *****************************************/
+  public void markChanged( Task task )
+  {
+    // mark task as needing rescheduling
+    m_changed.add( task );
+  }
+
+  /************************************** markGraphChanged ***************************************/
+  public void markGraphChanged( Task task )
+  {
+    // mark task as needing its dependency graph edges updating
+    m_graphChanged.add( task );
+  }
+
+  /*************************************** markNullChanged ***************************************/
+  public void markNullChanged( Task task )
+  {
+    // task has become null or non-null, so it and tasks with it as a direct predecessor need
+    // rescheduling and their dependency graph edges updating
+    markChanged( task );
+    markGraphChanged( task );
+    task.clearRollups( false );
+
+    // find dependent tasks from dependency graph as last updated plus tasks waiting to update it,
+    // but if graph will be rebuilt and every task rescheduled no need, otherwise check every task
+    Iterable<Task> candidates = this;
+    if ( m_graph != null && m_graph.getSize() == size() )
+    {
+      ArrayList<Task> list = new ArrayList<Task>( m_graphChanged );
+      for ( int index : m_graph.getReferrers( indexOf( task ) ) )
+        list.add( get( index ) );
+      candidates = list;
+    }
+    else if ( m_allChanged )
+      return;
+
+    for ( Task other : candidates )
+      if ( other != task && !other.isNull() && hasPredecessor( other, task ) )
+      {
+        markChanged( other );
+        markGraphChanged( other );
+      }
+  }
+
+  /*************************************** hasPredecessor ****************************************/
+  private static boolean hasPredecessor( Task task, Task pred )
+  {
+    // return true if task has pred as a direct predecessor
+    Predecessors preds = task.getPredecessors();
+    for ( int p = 0; p < preds.getCount(); p++ )
+      if ( preds.get( p ).task == pred )
+        return true;
+
+    return false;
+  }
+
+  /*************************************** markAllChanged ****************************************/
+  public void markAllChanged()
+  {
+    // mark every task as needing rescheduling, for example after calendar or resource change
+    m_allChanged = true;
   }
 
   /****************************************** canIndent ******************************************/
@@ -243,50 +430,108 @@ public class Tasks extends ArrayList<Task>
   /************************************ updateSummaryMarkers *************************************/
   public void updateSummaryMarkers()
   {
-    // for each task ensure summaryEnd and SummaryStart set correctly
-    for ( int row = 0; row < size(); row++ )
+    // ensure summaryEnd and summaryStart set correctly for every task in one pass
+    markSummaries( 0, size() - 1 );
+
+    // ensure special task 0 is marked as summary of all other tasks
+    int last = size() - 1;
+    while ( last > 0 && get( last ).isNull() )
+      last--;
+    setSummaryEnd( get( 0 ), last > 0 ? last : size() - 1 );
+  }
+
+  /************************************ updateSummaryMarkers *************************************/
+  public void updateSummaryMarkers( Set<Integer> rows )
+  {
+    // update summaryEnd and summaryStart after indent of rows changed by one level, only tasks
+    // within the nearest summary containing all the rows both before and after are re-marked
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    int indent = Integer.MAX_VALUE;
+    for ( int row : rows )
     {
       Task task = get( row );
       if ( task.isNull() )
         continue;
 
-      int indent = task.getIndent();
+      first = Math.min( first, row );
+      last = Math.max( last, row );
+      indent = Math.min( indent, task.getIndent() - 1 );
+    }
+    if ( first > last )
+      return;
 
-      // check if summary, and if summary set summary end
-      Task other;
-      int end = -1;
-      int check = row;
-      while ( ++check < size() )
-      {
-        other = get( check );
-        if ( other.isNull() )
-          continue;
+    // summaries before first row are unchanged, so walk up from first row's summary
+    int top = get( first ).getSummaryStart();
+    while ( top > 0 && ( get( top ).getIndent() >= indent || get( top ).getSummaryEnd() < last ) )
+      top = get( top ).getSummaryStart();
 
-        if ( other.getIndent() <= indent )
-          break;
-        else
-          end = check;
-      }
-      task.setSummaryEnd( end );
+    markSummaries( top, top == 0 ? size() - 1 : get( top ).getSummaryEnd() );
+  }
 
-      // look for summary of this task
-      for ( int start = row - 1; start >= 0; start-- )
+  /**************************************** markSummaries ****************************************/
+  private void markSummaries( int top, int last )
+  {
+    // set summaryEnd and summaryStart of tasks after top up to last, which must all be sub-tasks
+    // of top, using a stack of the summaries containing the current row
+    int[] stack = new int[16];
+    int depth = 0;
+    stack[depth++] = top;
+    int previous = top;
+
+    for ( int row = top + 1; row <= last; row++ )
+    {
+      Task task = get( row );
+      if ( task.isNull() )
+        continue;
+
+      // tasks indented same or more than this task have no more sub-tasks
+      int indent = task.getIndent();
+      while ( depth > 1 && get( stack[depth - 1] ).getIndent() >= indent )
       {
-        other = get( start );
-        if ( other.isNull() )
-          continue;
+        int done = stack[--depth];
+        setSummaryEnd( get( done ), previous > done ? previous : -1 );
+      }
 
-        if ( other.getIndent() < indent )
-        {
-          task.setSummaryStart( start );
-          break;
-        }
+      // summary of this task is top of stack
+      if ( task.getSummaryStart() != stack[depth - 1] )
+      {
+        task.setSummaryStart( stack[depth - 1] );
+        markStructureChanged( task );
       }
+
+      if ( depth == stack.length )
+        stack = Arrays.copyOf( stack, depth * 2 );
+      stack[depth++] = row;
+      previous = row;
+    }
+
+    // remaining tasks on stack end at last task
+    while ( depth > 1 )
+    {
+      int done = stack[--depth];
+      setSummaryEnd( get( done ), previous > done ? previous : -1 );
+    }
+  }
+
+  /**************************************** setSummaryEnd ****************************************/
+  private void setSummaryEnd( Task task, int end )
+  {
+    // set task summary end, noting if changed
+    if ( task.getSummaryEnd() != end )
+    {
+      task.setSummaryEnd( end );
+      markStructureChanged( task );
     }
+  }
 
-    // ensure special task 0 is marked as summary
-    if ( get( 0 ).getSummaryEnd() < 0 )
-      get( 0 ).setSummaryEnd( size() - 1 );
+  /************************************ markStructureChanged *************************************/
+  private void markStructureChanged( Task task )
+  {
+    // summary structure of task changed, so needs rescheduling with summary roll-ups recalculated
+    markChanged( task );
+    markGraphChanged( task );
+    task.clearRollups( false );
   }
 
   /************************************** cleanPredecessors **************************************/
@@ -322,16 +567,80 @@ public class Tasks extends ArrayList<Task>
   /************************************** getTaskResources ***************************************/
   public HashMap<Task, TaskResources> getTaskResources( String tag )
   {
-    // return map of tasks and TaskResources that use the tag
+    // return map of tasks (excluding null tasks) and TaskResources that use the tag
     HashMap<Task, TaskResources> map = new HashMap<Task, TaskResources>();
-    for ( Task task : this )
+    HashSet<Task> tasks = getTagIndex().get( tag );
+    if ( tasks != null )
+      for ( Task task : tasks )
+        if ( !task.isNull() )
+          map.put( task, task.getResources() );
+
+    return map;
+  }
+
+  /***************************************** getTagTasks *****************************************/
+  Set<Task> getTagTasks( String tag )
+  {
+    // return tasks assigned resource tag, which may include null tasks
+    HashSet<Task> tasks = getTagIndex().get( tag );
+    return tasks == null ? Collections.emptySet() : tasks;
+  }
+
+  /***************************************** getTagIndex *****************************************/
+  private HashMap<String, HashSet<Task>> getTagIndex()
+  {
+    // return index from resource tag to tasks assigned it, rebuilding if needed
+    if ( m_tagTasks == null )
     {
-      TaskResources tr = (TaskResources) task.getValue( Task.SECTION_RES );
-      if ( tr != null && tr.containsTag( tag ) )
-        map.put( task, tr );
+      m_tagTasks = new HashMap<String, HashSet<Task>>();
+      for ( Task task : this )
+        addTaskTags( task );
     }
 
-    return map;
+    return m_tagTasks;
+  }
+
+  /***************************************** addTaskTags *****************************************/
+  void addTaskTags( Task task )
+  {
+    // add task to index for each resource tag assigned to it
+    if ( m_tagTasks == null || task.getResources() == null || indexOf( task ) < 0 )
+      return;
+
+    for ( String tag : task.getResources().getTags() )
+      m_tagTasks.computeIfAbsent( tag, key -> new HashSet<Task>() ).add( task );
+  }
+
+  /*************************************** removeTaskTags ****************************************/
+  void removeTaskTags( Task task )
+  {
+    // remove task from index for each resource tag assigned to it
+    if ( m_tagTasks == null || task.getResources() == null || indexOf( task ) < 0 )
+      return;
+
+    for ( String tag : task.getResources().getTags() )
+    {
+      HashSet<Task> tasks = m_tagTasks.get( tag );
+      if ( tasks != null && tasks.remove( task ) && tasks.isEmpty() )
+        m_tagTasks.remove( tag );
+    }
+  }
+
+  /****************************************** readIndex ******************************************/
+  @Override
+  protected int readIndex( Object item )
+  {
+    // return position held by item
+    return item instanceof Task ? ( (Task) item ).getListIndex() : -1;
+  }
+
+  /***************************************** writeIndex ******************************************/
+  @Override
+  protected void writeIndex( Task task, int index )
+  {
+    // record position in item, and as tasks list has changed tag index must be rebuilt
+    task.setListIndex( index );
+    m_tagTasks = null;
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+/**************************************************************************
+ *  Copyright (C) 2018 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/*************************************************************************************************/
+/*********************** Resource usage over time held as a step function ************************/
+/*************************************************************************************************/
+
+public class UsageTimeline
+{
+  private TreeMap<Long, Double> m_steps;             // usage from each change point until the next
+  private static final double   TOLERANCE = 1e-9;    // usage differences smaller than this are ignored
+
+  /**************************************** constructor ******************************************/
+  public UsageTimeline()
+  {
+    // construct empty timeline, with zero usage at all times
+    m_steps = new TreeMap<>();
+  }
+
+  /**************************************** constructor ******************************************/
+  public UsageTimeline( UsageTimeline other )
+  {
+    // construct copy of other timeline
+    m_steps = new TreeMap<>( other.m_steps );
+  }
+
+  /********************************************* add *********************************************/
+  public void add( long startMS, long endMS, double num )
+  {
+    // add usage number between start (inclusive) and end (exclusive), negative number removes usage
+    if ( endMS <= startMS || num == 0.0 )
+      return;
+
+    split( startMS );
+    split( endMS );
+    for ( Map.Entry<Long, Double> step : m_steps.subMap( startMS, endMS ).entrySet() )
+    {
+      double use = step.getValue() + num;
+      step.setValue( Math.abs( use ) < TOLERANCE ? 0.0 : use );
+    }
+
+    // remove change points no longer changing the usage
+    merge( endMS );
+    merge( startMS );
+  }
+
+  /******************************************** split ********************************************/
+  private void split( long ms )
+  {
+    // ensure there is a change point at specified milliseconds
+    if ( !m_steps.containsKey( ms ) )
+      m_steps.put( ms, getUsage( ms ) );
+  }
+
+  /******************************************** merge ********************************************/
+  private void merge( long ms )
+  {
+    // remove change point at specified milliseconds if usage same as before it
+    Double use = m_steps.get( ms );
+    if ( use == null )
+      return;
+
+    Map.Entry<Long, Double> before = m_steps.lowerEntry( ms );
+    double previous = before == null ? 0.0 : before.getValue();
+    if ( Math.abs( use - previous ) < TOLERANCE )
+      m_steps.remove( ms );
+  }
+
+  /****************************************** getUsage *******************************************/
+  public double getUsage( long ms )
+  {
+    // return usage at specified milliseconds
+    Map.Entry<Long, Double> step = m_steps.floorEntry( ms );
+    return step == null ? 0.0 : step.getValue();
+  }
+
+  /**************************************** getNextChange ****************************************/
+  public long getNextChange( long ms )
+  {
+    // return milliseconds when usage next changes after specified milliseconds, or Long.MAX_VALUE if never
+    Long change = m_steps.higherKey( ms );
+    return change == null ? Long.MAX_VALUE : change;
+  }
+
+  /************************************** getPreviousChange **************************************/
+  public long getPreviousChange( long ms )
+  {
+    // return milliseconds when usage last changed before specified milliseconds, or Long.MIN_VALUE if never
+    Long change = m_steps.lowerKey( ms );
+    return change == null ? Long.MIN_VALUE : change;
+  }
+
+  /***************************************** getMaxUsage *****************************************/
+  public double getMaxUsage( long startMS, long endMS )
+  {
+    // return maximum usage between start (inclusive) and end (exclusive)
+    double max = getUsage( startMS );
+    for ( double use : m_steps.subMap( startMS, false, endMS, false ).values() )
+      if ( use > max )
+        max = use;
+
+    return max;
+  }
+
+  /****************************************** whenFree *******************************************/
+  public long whenFree( long startMS, long endMS, double limit )
+  {
+    // return earliest time from start after which usage stays within limit until end, searching
+    // backwards from end so only steps after the last one over the limit are examined
+    for ( Map.Entry<Long, Double> step : m_steps.headMap( endMS, false ).descendingMap().entrySet() )
+    {
+      if ( step.getValue() > limit + TOLERANCE )
+        return getNextChange( step.getKey() );
+      if ( step.getKey() <= startMS )
+        break;
+    }
+
+    return startMS;
+  }
+
+  /****************************************** getSteps *******************************************/
+  public NavigableMap<Long, Double> getSteps()
+  {
+    // return read-only view of change points and the usage from each until the next
+    return Collections.unmodifiableNavigableMap( m_steps );
+  }
+
+  /******************************************* isEmpty *******************************************/
+  public boolean isEmpty()
+  {
+    // return true if zero usage at all times
+    return m_steps.isEmpty();
+  }
+
+}
@@ -19,44 +19,130 @@
 package rjc.jplanner.model;
 
 import java.util.ArrayList;
-
-import rjc.jplanner.JPlanner;
-import rjc.jplanner.model.Work.Effort;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
 
 /*************************************************************************************************/
 /***************************** ?????? resource work on a plan ?????? *****************************/
 /*************************************************************************************************/
 
-public class Work extends ArrayList<Effort>
+public class Work
 {
-  private static final long serialVersionUID = 1L;
+  // effort records are held in parallel arrays, allocated in chunks so growing never copies records
+  private static final int             CHUNK_BITS = 12;
+  private static final int             CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int             CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private int[][]                      m_taskId;      // task id of each effort record
+  private int[][]                      m_resourceId;  // resource id of each effort record
+  private double[][]                   m_num;         // quantity of resource used by each effort record
+  private long[][]                     m_startMS;     // start of each effort record
+  private long[][]                     m_endMS;       // end of each effort record
+  private double[][]                   m_work;        // work days done by each effort record
+  private int                          m_size;        // number of effort records
+
+  private HashMap<Task, TaskEfforts>   m_tasks;       // efforts and work total for each task
+  private ArrayList<TaskEfforts>       m_taskList;    // efforts and work total for each task id
+  private HashMap<Resource, Integer>   m_resourceIds; // id for each resource
+  private ArrayList<Resource>          m_resources;   // resource for each resource id
+  private ArrayList<UsageTimeline>     m_timelines;   // usage over time for each resource id
+  private OverAllocations              m_overAlloc;   // over-allocation analysis, null until requested
 
-  // structure that contains one work record
-  class Effort
+  // structure that contains the effort records of one task and their total work
+  class TaskEfforts
   {
-    public Task     task;
-    public Resource resource;
-    public double   num;     // quantity >0, or <=0 means all of available resource
-    public long     startMS;
-    public long     endMS;
+    public Task   task;
+    public int    id;
+    public int[]  records = new int[4];
+    public int    count;
+    public double work;
 
-    private Effort( Task task, Resource resource, double num, DateTime start, DateTime end )
+    private TaskEfforts( Task task, int id )
     {
       this.task = task;
-      this.resource = resource;
-      this.num = num;
-      this.startMS = start.getMilliseconds();
-      this.endMS = end.getMilliseconds();
+      this.id = id;
+    }
+
+    private TaskEfforts( TaskEfforts other )
+    {
+      task = other.task;
+      id = other.id;
+      records = Arrays.copyOf( other.records, other.records.length );
+      count = other.count;
+      work = other.work;
+    }
+
+    private void add( int record )
+    {
+      if ( count == records.length )
+        records = Arrays.copyOf( records, count * 2 );
+      records[count++] = record;
+    }
+  }
+
+  // cursor to step through effort records without creating an object per record
+  public class Cursor
+  {
+    private TaskEfforts m_taskEfforts; // efforts of one task, or null for all efforts
+    private int         m_position;    // position of cursor in efforts being visited
+    private int         m_record;      // effort record at cursor
+
+    private Cursor( TaskEfforts taskEfforts )
+    {
+      m_taskEfforts = taskEfforts;
+      m_position = -1;
+      m_record = -1;
+    }
+
+    public boolean next()
+    {
+      // move cursor to next effort record, returning false if no more
+      m_position++;
+      if ( m_taskEfforts == null )
+        m_record = m_position < m_size ? m_position : -1;
+      else
+        m_record = m_position < m_taskEfforts.count ? m_taskEfforts.records[m_position] : -1;
+
+      return m_record >= 0;
+    }
+
+    public Task getTask()
+    {
+      return m_taskList.get( m_taskId[m_record >> CHUNK_BITS][m_record & CHUNK_MASK] ).task;
+    }
+
+    public Resource getResource()
+    {
+      return m_resources.get( m_resourceId[m_record >> CHUNK_BITS][m_record & CHUNK_MASK] );
+    }
+
+    public double getNumber()
+    {
+      return m_num[m_record >> CHUNK_BITS][m_record & CHUNK_MASK];
+    }
+
+    public long getStartMS()
+    {
+      return m_startMS[m_record >> CHUNK_BITS][m_record & CHUNK_MASK];
+    }
+
+    public long getEndMS()
+    {
+      return m_endMS[m_record >> CHUNK_BITS][m_record & CHUNK_MASK];
+    }
+
+    public double getWork()
+    {
+      return m_work[m_record >> CHUNK_BITS][m_record & CHUNK_MASK];
     }
 
     @Override
     public String toString()
     {
-      String hash = super.toString();
-      String id = hash.substring( hash.lastIndexOf( '.' ) + 1 );
-      DateTime start = new DateTime( startMS );
-      DateTime end = new DateTime( endMS );
-      return id + "[" + task + ", " + resource + ", " + num + ", " + start + ", " + end + "]";
+      DateTime start = new DateTime( getStartMS() );
+      DateTime end = new DateTime( getEndMS() );
+      return "Effort[" + getTask() + ", " + getResource() + ", " + getNumber() + ", " + start + ", " + end + "]";
     }
   }
 
@@ -73,21 +159,133 @@ public class Work extends ArrayList<Effort>
     }
   }
 
+  /**************************************** constructor ******************************************/
+  public Work()
+  {
+    // construct empty work list
+    m_taskId = new int[0][];
+    m_resourceId = new int[0][];
+    m_num = new double[0][];
+    m_startMS = new long[0][];
+    m_endMS = new long[0][];
+    m_work = new double[0][];
+
+    m_tasks = new HashMap<>();
+    m_taskList = new ArrayList<>();
+    m_resourceIds = new HashMap<>();
+    m_resources = new ArrayList<>();
+    m_timelines = new ArrayList<>();
+  }
+
+  /**************************************** constructor ******************************************/
+  public Work( Work other )
+  {
+    // construct copy of other work, so copy can be changed while other is still being read
+    m_taskId = new int[other.m_taskId.length][];
+    m_resourceId = new int[other.m_taskId.length][];
+    m_num = new double[other.m_taskId.length][];
+    m_startMS = new long[other.m_taskId.length][];
+    m_endMS = new long[other.m_taskId.length][];
+    m_work = new double[other.m_taskId.length][];
+    for ( int chunk = 0; chunk < m_taskId.length; chunk++ )
+    {
+      m_taskId[chunk] = other.m_taskId[chunk].clone();
+      m_resourceId[chunk] = other.m_resourceId[chunk].clone();
+      m_num[chunk] = other.m_num[chunk].clone();
+      m_startMS[chunk] = other.m_startMS[chunk].clone();
+      m_endMS[chunk] = other.m_endMS[chunk].clone();
+      m_work[chunk] = other.m_work[chunk].clone();
+    }
+    m_size = other.m_size;
+
+    m_tasks = new HashMap<>();
+    m_taskList = new ArrayList<>( other.m_taskList.size() );
+    for ( TaskEfforts taskEfforts : other.m_taskList )
+    {
+      TaskEfforts copy = new TaskEfforts( taskEfforts );
+      m_tasks.put( copy.task, copy );
+      m_taskList.add( copy );
+    }
+
+    m_resourceIds = new HashMap<>( other.m_resourceIds );
+    m_resources = new ArrayList<>( other.m_resources );
+    m_timelines = new ArrayList<>( other.m_timelines.size() );
+    for ( UsageTimeline timeline : other.m_timelines )
+      m_timelines.add( new UsageTimeline( timeline ) );
+  }
+
+  /******************************************** size *********************************************/
+  public int size()
+  {
+    // return number of effort records
+    return m_size;
+  }
+
   /******************************************** clear ********************************************/
-  @Override
   public void clear()
   {
-    // clear all stored effort
-    super.clear();
+    // clear all stored effort, keeping allocated chunks for reuse
+    m_size = 0;
+    m_overAlloc = null;
+    m_tasks.clear();
+    m_taskList.clear();
+    m_resourceIds.clear();
+    m_resources.clear();
+    m_timelines.clear();
+  }
+
+  /******************************************** clear ********************************************/
+  public void clear( Set<Task> tasks )
+  {
+    // note ids of the tasks being cleared, and empty their effort lists (cached work values on tasks
+    // are cleared when the schedule is published, as other threads may still be reading them)
+    boolean[] clearing = new boolean[m_taskList.size()];
+    for ( Task task : tasks )
+    {
+      TaskEfforts taskEfforts = m_tasks.get( task );
+      if ( taskEfforts != null )
+        clearing[taskEfforts.id] = true;
+    }
+    for ( TaskEfforts taskEfforts : m_taskList )
+    {
+      taskEfforts.count = 0;
+      if ( clearing[taskEfforts.id] )
+        taskEfforts.work = 0.0;
+    }
+
+    // remove effort records of these tasks from timelines, and move remaining records down
+    int keep = 0;
+    for ( int record = 0; record < m_size; record++ )
+    {
+      int chunk = record >> CHUNK_BITS;
+      int offset = record & CHUNK_MASK;
+      int taskId = m_taskId[chunk][offset];
+      if ( clearing[taskId] )
+      {
+        UsageTimeline timeline = m_timelines.get( m_resourceId[chunk][offset] );
+        timeline.add( m_startMS[chunk][offset], m_endMS[chunk][offset], -m_num[chunk][offset] );
+        continue;
+      }
 
-    // clear cached work values on tasks
-    for ( Task task : JPlanner.plan.tasks )
-      if ( !task.isNull() && !task.isSectionEditable( Task.SECTION_WORK ) )
-        task.setValue( Task.SECTION_WORK, null );
+      if ( keep != record )
+      {
+        int keepChunk = keep >> CHUNK_BITS;
+        int keepOffset = keep & CHUNK_MASK;
+        m_taskId[keepChunk][keepOffset] = taskId;
+        m_resourceId[keepChunk][keepOffset] = m_resourceId[chunk][offset];
+        m_num[keepChunk][keepOffset] = m_num[chunk][offset];
+        m_startMS[keepChunk][keepOffset] = m_startMS[chunk][offset];
+        m_endMS[keepChunk][keepOffset] = m_endMS[chunk][offset];
+        m_work[keepChunk][keepOffset] = m_work[chunk][offset];
+      }
+      m_taskList.get( taskId ).add( keep++ );
+    }
+    m_size = keep;
+    m_overAlloc = null;
   }
 
   /********************************************* add *********************************************/
-  public Effort add( Task task, Resource resource, double num, DateTime start, DateTime end )
+  public boolean add( Task task, Resource resource, double num, DateTime start, DateTime end )
   {
     // check input parameters
     if ( task == null )
@@ -103,72 +301,303 @@ public class Work extends ArrayList<Effort>
     if ( end.getMilliseconds() <= start.getMilliseconds() )
       throw new IllegalArgumentException( "Start must be before End" );
 
-    // ensure start is not before resource start
-    DateTime resourceStart = resource.getStart();
-    if ( end.isLessThan( resourceStart ) )
-      return null;
-    if ( start.isLessThan( resourceStart ) )
-      start = new DateTime( resourceStart );
+    // split effort where resource availability changes (including resource start & end), ensuring
+    // each part is not greater than the availability not already used at its start
+    int resourceId = getResourceId( resource );
+    UsageTimeline timeline = m_timelines.get( resourceId );
+    TaskEfforts taskEfforts = null;
+    long endMS = end.getMilliseconds();
+    for ( long startMS = start.getMilliseconds(); startMS < endMS; )
+    {
+      long changeMS = Math.min( resource.getAvailableChange( startMS ), endMS );
+      double free = resource.getAvailable( startMS ) - timeline.getUsage( startMS );
+      if ( free > 0.0 )
+      {
+        if ( taskEfforts == null )
+          taskEfforts = getTaskEfforts( task );
+        addRecord( taskEfforts, resourceId, Math.min( num, free ), startMS, changeMS );
+      }
+      startMS = changeMS;
+    }
+
+    // return true if any effort accepted
+    return taskEfforts != null;
+  }
+
+  /****************************************** addRecord ******************************************/
+  private void addRecord( TaskEfforts taskEfforts, int resourceId, double num, long startMS, long endMS )
+  {
+    // add effort record with specified parameters, and update resource usage and task work
+    double work = m_resources.get( resourceId ).getCalendar().workBetweenMS( startMS, endMS ) * num;
+    storeRecord( taskEfforts, resourceId, num, startMS, endMS, work );
+    m_timelines.get( resourceId ).add( startMS, endMS, num );
+  }
+
+  /***************************************** storeRecord *****************************************/
+  private void storeRecord( TaskEfforts taskEfforts, int resourceId, double num, long startMS, long endMS,
+      double work )
+  {
+    // store effort record and update task work, resource usage is updated by caller
+    if ( m_size == m_taskId.length << CHUNK_BITS )
+      grow();
+    int chunk = m_size >> CHUNK_BITS;
+    int offset = m_size & CHUNK_MASK;
+    m_taskId[chunk][offset] = taskEfforts.id;
+    m_resourceId[chunk][offset] = resourceId;
+    m_num[chunk][offset] = num;
+    m_startMS[chunk][offset] = startMS;
+    m_endMS[chunk][offset] = endMS;
+    m_work[chunk][offset] = work;
+
+    taskEfforts.add( m_size++ );
+    taskEfforts.work += work;
+    m_overAlloc = null;
+  }
+
+  /******************************************* append ********************************************/
+  void append( Work part, Task task )
+  {
+    // append efforts of task from work scheduled separately, every effort using a resource must be
+    // in the same part so its usage timeline is taken over unchanged when resource first appended
+    TaskEfforts efforts = part.m_tasks.get( task );
+    if ( efforts == null || efforts.count == 0 )
+      return;
+
+    TaskEfforts taskEfforts = getTaskEfforts( task );
+    for ( int position = 0; position < efforts.count; position++ )
+    {
+      int chunk = efforts.records[position] >> CHUNK_BITS;
+      int offset = efforts.records[position] & CHUNK_MASK;
+      int partId = part.m_resourceId[chunk][offset];
+      Resource resource = part.m_resources.get( partId );
+      Integer id = m_resourceIds.get( resource );
+      if ( id == null )
+      {
+        id = m_resources.size();
+        m_resourceIds.put( resource, id );
+        m_resources.add( resource );
+        m_timelines.add( part.m_timelines.get( partId ) );
+      }
 
-    // ensure end is not after resource end
-    DateTime resourceEnd = resource.getEnd();
-    if ( resourceEnd.isLessThan( start ) )
-      return null;
-    if ( resourceEnd.isLessThan( end ) )
-      end = new DateTime( resourceEnd );
+      storeRecord( taskEfforts, id, part.m_num[chunk][offset], part.m_startMS[chunk][offset],
+          part.m_endMS[chunk][offset], part.m_work[chunk][offset] );
+    }
+  }
 
-    // ensure effort is not greater than resource availability
-    Double avail = resource.getAvailable();
-    DateTimeNumber usage = getResourceUsage( resource, start );
-    if ( num > avail - usage.num )
-      num = avail - usage.num;
+  /******************************************** grow *********************************************/
+  private void grow()
+  {
+    // add another chunk to each of the effort record arrays
+    int chunks = m_taskId.length + 1;
+    m_taskId = Arrays.copyOf( m_taskId, chunks );
+    m_resourceId = Arrays.copyOf( m_resourceId, chunks );
+    m_num = Arrays.copyOf( m_num, chunks );
+    m_startMS = Arrays.copyOf( m_startMS, chunks );
+    m_endMS = Arrays.copyOf( m_endMS, chunks );
+    m_work = Arrays.copyOf( m_work, chunks );
 
-    // add effort with specified parameters
-    Effort effort = new Effort( task, resource, num, start, end );
+    m_taskId[chunks - 1] = new int[CHUNK_SIZE];
+    m_resourceId[chunks - 1] = new int[CHUNK_SIZE];
+    m_num[chunks - 1] = new double[CHUNK_SIZE];
+    m_startMS[chunks - 1] = new long[CHUNK_SIZE];
+    m_endMS[chunks - 1] = new long[CHUNK_SIZE];
+    m_work[chunks - 1] = new double[CHUNK_SIZE];
+  }
 
-    // do checks to ensure resource is not over allocated and reduce effort appropriately !!!
-    add( effort );
+  /*************************************** getTaskEfforts ****************************************/
+  private TaskEfforts getTaskEfforts( Task task )
+  {
+    // return effort list for specified task, creating and giving task an id if not yet existing
+    TaskEfforts taskEfforts = m_tasks.get( task );
+    if ( taskEfforts == null )
+    {
+      taskEfforts = new TaskEfforts( task, m_taskList.size() );
+      m_tasks.put( task, taskEfforts );
+      m_taskList.add( taskEfforts );
+    }
 
-    // return effort actually accepted, or null if no effort accepted
-    return effort;
+    return taskEfforts;
+  }
+
+  /**************************************** getResourceId ****************************************/
+  private int getResourceId( Resource resource )
+  {
+    // return id for specified resource, creating id and usage timeline if not yet existing
+    Integer id = m_resourceIds.get( resource );
+    if ( id == null )
+    {
+      id = m_resources.size();
+      m_resourceIds.put( resource, id );
+      m_resources.add( resource );
+      m_timelines.add( new UsageTimeline() );
+    }
+
+    return id;
   }
 
   /************************************** getResourceUsage ***************************************/
   public DateTimeNumber getResourceUsage( Resource resource, DateTime datetime )
   {
     // return resource usage at specified date-time and when usage next changes
+    Integer id = m_resourceIds.get( resource );
+    if ( id == null )
+      return new DateTimeNumber( DateTime.MAX_VALUE, 0.0 );
+
+    UsageTimeline timeline = m_timelines.get( id );
     long ms = datetime.getMilliseconds();
-    double use = 0.0;
-    long change = DateTime.MAX_VALUE.getMilliseconds();
+    long change = Math.min( timeline.getNextChange( ms ), DateTime.MAX_VALUE.getMilliseconds() );
+    return new DateTimeNumber( new DateTime( change ), timeline.getUsage( ms ) );
+  }
 
-    // loop around each effort record checking for resource and date-time range
-    for ( Effort effort : this )
-      if ( effort.resource == resource && effort.startMS <= ms && effort.endMS > ms )
-      {
-        use += effort.num;
-        if ( effort.endMS < change )
-          change = effort.endMS;
-      }
+  /***************************************** getTimeline *****************************************/
+  public UsageTimeline getTimeline( Resource resource )
+  {
+    // return usage timeline for specified resource, or null if resource has no efforts
+    Integer id = m_resourceIds.get( resource );
+    return id == null ? null : m_timelines.get( id );
+  }
 
-    return new DateTimeNumber( new DateTime( change ), use );
+  /*************************************** getResourceFree ***************************************/
+  public double getResourceFree( Resource resource, DateTime start, DateTime end )
+  {
+    // return resource availability not used by any effort throughout specified date-time range,
+    // checking each period of constant availability within the range
+    Integer id = m_resourceIds.get( resource );
+    UsageTimeline timeline = id == null ? null : m_timelines.get( id );
+    long endMS = end.getMilliseconds();
+    long fromMS = start.getMilliseconds();
+    double free = Double.MAX_VALUE;
+    do
+    {
+      long toMS = Math.min( resource.getAvailableChange( fromMS ), endMS );
+      double used = timeline == null ? 0.0 : timeline.getMaxUsage( fromMS, toMS );
+      free = Math.min( free, resource.getAvailable( fromMS ) - used );
+      fromMS = toMS;
+    }
+    while ( fromMS < endMS );
+
+    return Math.max( free, 0.0 );
+  }
+
+  /****************************************** whenFree *******************************************/
+  public long whenFree( Resource resource, long startMS, long endMS, double num )
+  {
+    // return earliest time from start after which specified number of resource is free until end
+    Integer id = m_resourceIds.get( resource );
+    if ( id == null )
+      return startMS;
+
+    // check each period of constant availability latest first, as the last time the resource is
+    // not free determines when it is free until end
+    UsageTimeline timeline = m_timelines.get( id );
+    for ( long toMS = endMS; toMS > startMS; )
+    {
+      long fromMS = Math.max( resource.getAvailablePrevious( toMS ), startMS );
+      double limit = Math.max( resource.getAvailable( fromMS ) - num, 0.0 );
+      long free = timeline.whenFree( fromMS, toMS, limit );
+      if ( free > fromMS )
+        return toMS < endMS ? Math.min( free, toMS ) : free;
+      toMS = fromMS;
+    }
+
+    return startMS;
+  }
+
+  /************************************* getOverAllocations **************************************/
+  public OverAllocations getOverAllocations()
+  {
+    // return over-allocation analysis of current efforts, analysing only when efforts have changed
+    if ( m_overAlloc == null )
+      m_overAlloc = new OverAllocations( this );
+
+    return m_overAlloc;
+  }
+
+  /************************************* getResourceRecords **************************************/
+  int[][] getResourceRecords()
+  {
+    // return effort records of each resource id, grouped by counting records per resource first
+    int[] count = new int[m_resources.size()];
+    for ( int record = 0; record < m_size; record++ )
+      count[m_resourceId[record >> CHUNK_BITS][record & CHUNK_MASK]]++;
+
+    int[][] records = new int[count.length][];
+    for ( int id = 0; id < count.length; id++ )
+    {
+      records[id] = new int[count[id]];
+      count[id] = 0;
+    }
+    for ( int record = 0; record < m_size; record++ )
+    {
+      int id = m_resourceId[record >> CHUNK_BITS][record & CHUNK_MASK];
+      records[id][count[id]++] = record;
+    }
+
+    return records;
+  }
+
+  /***************************************** getResource *****************************************/
+  Resource getResource( int id )
+  {
+    // return resource with specified resource id
+    return m_resources.get( id );
+  }
+
+  /***************************************** getTimeline *****************************************/
+  UsageTimeline getTimeline( int id )
+  {
+    // return usage timeline of specified resource id
+    return m_timelines.get( id );
+  }
+
+  /******************************************* getTask *******************************************/
+  Task getTask( int record )
+  {
+    // return task of specified effort record
+    return m_taskList.get( m_taskId[record >> CHUNK_BITS][record & CHUNK_MASK] ).task;
+  }
+
+  /***************************************** getStartMS ******************************************/
+  long getStartMS( int record )
+  {
+    // return start of specified effort record
+    return m_startMS[record >> CHUNK_BITS][record & CHUNK_MASK];
+  }
+
+  /****************************************** getEndMS *******************************************/
+  long getEndMS( int record )
+  {
+    // return end of specified effort record
+    return m_endMS[record >> CHUNK_BITS][record & CHUNK_MASK];
   }
 
   /******************************************* getWork *******************************************/
   public TimeSpan getWork( Task task )
   {
     // return work for specified task
-    double workDays = 0.0;
+    TaskEfforts taskEfforts = m_tasks.get( task );
+    if ( taskEfforts == null )
+      return new TimeSpan( 0.0, TimeSpan.UNIT_DAYS );
 
-    for ( Effort effort : this )
-      if ( effort.task == task ) // only consider effort assigned to specified task
-      {
-        DateTime start = new DateTime( effort.startMS );
-        DateTime end = new DateTime( effort.endMS );
-        TimeSpan work = effort.resource.getCalendar().workBetween( start, end );
-        workDays += work.getNumber() * effort.num;
-      }
+    return new TimeSpan( taskEfforts.work, TimeSpan.UNIT_DAYS );
+  }
+
+  /******************************************* cursor ********************************************/
+  public Cursor cursor()
+  {
+    // return cursor positioned before first effort record
+    return new Cursor( null );
+  }
+
+  /******************************************* cursor ********************************************/
+  public Cursor cursor( Task task )
+  {
+    // return cursor positioned before first effort record of specified task
+    TaskEfforts taskEfforts = m_tasks.get( task );
+    if ( taskEfforts == null )
+      return new Cursor( new TaskEfforts( task, -1 ) );
 
-    return new TimeSpan( workDays, TimeSpan.UNIT_DAYS );
+    return new Cursor( taskEfforts );
   }
 
 }